@@ -0,0 +1,72 @@
+package cn.friday.base.service.global.redis.bo;
+
+/**
+ * Long成员的zset查询结果
+ * <p>
+ * 成员和分值分别保存在两个基本类型数组中，下标相同的是同一个元素，
+ * 不为每个元素创建对象
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class LongZsetPage {
+
+	/**
+	 * 没有下一页
+	 */
+	public final static long NO_NEXT = -1;
+
+	private final long[] members;
+
+	private final double[] scores;
+
+	private final long next;
+
+	public LongZsetPage(long[] members, double[] scores, long next) {
+		this.members = members;
+		this.scores = scores;
+		this.next = next;
+	}
+
+	public int size() {
+		return members.length;
+	}
+
+	public boolean isEmpty() {
+		return members.length == 0;
+	}
+
+	public long getMember(int index) {
+		return members[index];
+	}
+
+	public double getScore(int index) {
+		return scores[index];
+	}
+
+	public long[] getMembers() {
+		return members;
+	}
+
+	public double[] getScores() {
+		return scores;
+	}
+
+	/**
+	 * 下一页的开始位置(下标或者offset)，{@link #NO_NEXT}表示没有下一页
+	 * @return
+	 */
+	public long getNext() {
+		return next;
+	}
+
+	public boolean hasNext() {
+		return next != NO_NEXT;
+	}
+
+	@Override
+	public String toString() {
+		return "LongZsetPage [size=" + members.length + ", next=" + next + "]";
+	}
+
+}
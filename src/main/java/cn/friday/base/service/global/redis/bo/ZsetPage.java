@@ -0,0 +1,73 @@
+package cn.friday.base.service.global.redis.bo;
+
+/**
+ * zset带分值的查询结果
+ * <p>
+ * 成员和分值分别保存在两个数组中，下标相同的是同一个元素，
+ * 直接从redis的回复填充，不为每个元素创建{@link ZsetResult}和装箱的分值
+ * </p>
+ * @author BravoZu
+ *
+ * @param <T>
+ */
+public class ZsetPage<T> {
+
+	/**
+	 * 没有下一页
+	 */
+	public final static long NO_NEXT = -1;
+
+	private final T[] values;
+
+	private final double[] scores;
+
+	private final long next;
+
+	public ZsetPage(T[] values, double[] scores, long next) {
+		this.values = values;
+		this.scores = scores;
+		this.next = next;
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	public boolean isEmpty() {
+		return values.length == 0;
+	}
+
+	public T getValue(int index) {
+		return values[index];
+	}
+
+	public double getScore(int index) {
+		return scores[index];
+	}
+
+	public T[] getValues() {
+		return values;
+	}
+
+	public double[] getScores() {
+		return scores;
+	}
+
+	/**
+	 * 下一页的开始位置(下标或者offset)，{@link #NO_NEXT}表示没有下一页
+	 * @return
+	 */
+	public long getNext() {
+		return next;
+	}
+
+	public boolean hasNext() {
+		return next != NO_NEXT;
+	}
+
+	@Override
+	public String toString() {
+		return "ZsetPage [size=" + values.length + ", next=" + next + "]";
+	}
+
+}
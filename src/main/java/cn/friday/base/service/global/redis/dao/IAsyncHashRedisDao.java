@@ -0,0 +1,48 @@
+package cn.friday.base.service.global.redis.dao;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * hash结构的异步接口
+ * <p>
+ * 所有线程提交的命令会在很短的时间窗口内合并成一个pipeline发送，
+ * 高并发时大部分命令可以共用一次网络往返
+ * </p>
+ * @author BravoZu
+ *
+ * @param <T>
+ */
+public interface IAsyncHashRedisDao<T> {
+
+	/**
+	 * 异步查询，开启本地缓存时优先使用本地缓存
+	 * @param id
+	 * @return 不存在时结果为null
+	 */
+	public CompletableFuture<T> findByIdAsync(long id);
+
+	/**
+	 * 异步保存，id同步生成
+	 * @param t
+	 * @return 保存后的id
+	 */
+	public CompletableFuture<Long> saveAsync(T t);
+
+	/**
+	 * 异步保存有id的实体
+	 * @param t
+	 * @param id
+	 * @return 保存后的id
+	 */
+	public CompletableFuture<Long> saveAsync(T t, long id);
+
+	/**
+	 * 异步自增
+	 * @param haskField
+	 * @param delta
+	 * @param id
+	 * @return 自增后的值
+	 */
+	public CompletableFuture<Long> incrementAsync(String haskField, long delta, long id);
+
+}
@@ -1,5 +1,6 @@
 package cn.friday.base.service.global.redis.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -20,13 +21,40 @@ public interface IBaseHashRedisDao<T> {
 	 */
 	public T findById(long id, RedisLoader<T> loader);
 
+	/**
+	 * 只查询部分属性(HMGET)，
+	 * 本地缓存中有完整实体时直接返回缓存的实体
+	 * @param id
+	 * @param properties 需要查询的属性
+	 * @return 只填充了查询属性的实体
+	 */
+	public T findById(long id, String... properties);
+
 	/**
 	 * 一次性查询多个id
+	 * @see #multiFindByIds(Collection)
 	 * @param ids
 	 * @return
 	 */
+	@Deprecated
 	public List<T> multiFindByIds(final List<Long> ids);
 
+	/**
+	 * 一次性查询多个id，
+	 * 未命中本地缓存的id通过pipeline批量查询
+	 * @param ids
+	 * @return 按照ids的顺序返回，不存在的id不返回
+	 */
+	public Map<Long, T> multiFindByIds(Collection<Long> ids);
+
+	/**
+	 * 一次性查询多个id的部分属性
+	 * @param ids
+	 * @param properties 需要查询的属性
+	 * @return 按照ids的顺序返回，只填充了查询的属性
+	 */
+	public Map<Long, T> multiFindByIds(Collection<Long> ids, String... properties);
+
 	public long save(T t);
 
 	/**
@@ -84,6 +112,23 @@ public interface IBaseHashRedisDao<T> {
 	 */
 	public long save(T t, long id, final int expireTime, Syncer<T> syncer);
 
+	/**
+	 * 批量保存有id的实体，
+	 * 所有hash和过期时间通过pipeline写入
+	 * @param entities
+	 * @param expireTime 过期时间(秒)，小于等于0表示不过期
+	 * @return 保存的id
+	 */
+	public List<Long> saveAll(Map<Long, T> entities, int expireTime);
+
+	/**
+	 * 批量保存新的实体
+	 * @param entities
+	 * @param expireTime 过期时间(秒)，小于等于0表示不过期
+	 * @return 按照entities的顺序返回生成的id
+	 */
+	public List<Long> saveAll(Collection<T> entities, int expireTime);
+
 	public boolean exists(long id);
 
 	/**
@@ -100,6 +145,30 @@ public interface IBaseHashRedisDao<T> {
 
 	public long updateByMap(Map<String, String> map, long id);
 
+	/**
+	 * key存在时才更新一个值
+	 * @param propertyName
+	 * @param value
+	 * @param id
+	 * @return 是否已更新
+	 */
+	public boolean updateByPropertyIfExists(String propertyName, Object value, long id);
+
+	/**
+	 * key存在时才更新多个属性
+	 * @param map
+	 * @param id
+	 * @return 是否已更新
+	 */
+	public boolean updateByMapIfExists(Map<String, String> map, long id);
+
+	/**
+	 * 批量更新，key存在时才更新
+	 * @param updates id对应要更新的属性
+	 * @return id对应是否已更新
+	 */
+	public Map<Long, Boolean> updateByMapIfExists(Map<Long, Map<String, String>> updates);
+
 	/**
 	 * 增加某一个field的值
 	 * @param haskField
@@ -109,6 +178,23 @@ public interface IBaseHashRedisDao<T> {
 	 */
 	public long increment(String haskField, long delta, long id);
 
+	/**
+	 * 增加某一个field的值，增量先在本地合并，定时批量写入redis，
+	 * 适合浏览数、点赞数这类高频计数器
+	 * @param haskField
+	 * @param delta 负数表示减
+	 * @param id
+	 */
+	public void incrementBuffered(String haskField, long delta, long id);
+
+	/**
+	 * 查询计数器的值，包括本地还没有写入redis的增量
+	 * @param haskField
+	 * @param id
+	 * @return
+	 */
+	public long findCounter(String haskField, long id);
+
 	/**
 	 * 查询某一个属性对应的值
 	 * @param propertyName
@@ -7,6 +7,7 @@ import java.util.Set;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 
 import cn.friday.base.service.global.redis.bo.SimpleTypeTuple;
+import cn.friday.base.service.global.redis.bo.ZsetPage;
 import cn.friday.base.service.global.redis.bo.ZsetResult;
 import cn.friday.base.service.global.redis.loader.RedisLoader;
 
@@ -388,4 +389,59 @@ public interface IBaseZsetRedisDao<T> {
 	 */
 	public ZsetResult<T> getFirstWithScore(int... ids);
 
+
+	/**
+	 * 按照id查询，结果升序返回，
+	 * 成员和分值保存在数组中
+	 * @param start 下标索引
+	 * @param end 下标索引
+	 * @param ids
+	 * @return 不会返回null，下一页从end + 1开始
+	 */
+	public ZsetPage<T> findByIdWithScoresAscPage(long start, long end, int... ids);
+
+	/**
+	 * 按照分值的升序排序，
+	 * 成员和分值保存在数组中
+	 * @param min
+	 * @param max
+	 * @param ids
+	 * @return 不会返回null，没有下一页
+	 */
+	public ZsetPage<T> findByScoreWithScoresAscPage(double min, double max, int... ids);
+
+	/**
+	 * 按照分值的倒序排序，
+	 * 成员和分值保存在数组中
+	 * @param min
+	 * @param max
+	 * @param ids
+	 * @return 不会返回null，没有下一页
+	 */
+	public ZsetPage<T> findByScoreWithScoresDescPage(double min, double max, int... ids);
+
+	/**
+	 * 根据分值查询（升序），
+	 * 成员和分值保存在数组中
+	 * @param min
+	 * @param max
+	 * @param offset 从第几个开始查询
+	 * @param count 查询多少个
+	 * @param ids
+	 * @return 不会返回null，下一页的offset为offset + count
+	 */
+	public ZsetPage<T> findByScoreWithScoresAscPage(double min, double max, long offset, long count, int... ids);
+
+	/**
+	 * 根据分值查询（降序），
+	 * 成员和分值保存在数组中
+	 * @param min
+	 * @param max
+	 * @param offset 从第几个开始查询
+	 * @param count 查询多少个
+	 * @param ids
+	 * @return 不会返回null，下一页的offset为offset + count
+	 */
+	public ZsetPage<T> findByScoreWithScoresDescPage(double min, double max, long offset, long count, int... ids);
+
 }
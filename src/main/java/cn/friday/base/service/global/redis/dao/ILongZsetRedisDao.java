@@ -0,0 +1,139 @@
+package cn.friday.base.service.global.redis.dao;
+
+import cn.friday.base.service.global.redis.bo.LongZsetPage;
+
+/**
+ * 成员为Long的zset
+ * <p>
+ * 在{@link IBaseZsetRedisDao}的基础上提供基本类型的接口，
+ * id直接编码成字节，查询结果直接从redis返回的字节解析到long[]、double[]，不装箱。
+ * 成员保存为十进制文本，和{@link IBaseZsetRedisDao}&lt;Long&gt;写入的数据一致
+ * </p>
+ * @author BravoZu
+ *
+ */
+public interface ILongZsetRedisDao extends IBaseZsetRedisDao<Long> {
+
+	/**
+	 * 增加
+	 * @param member
+	 * @param score
+	 * @param ids
+	 * @return 是否为新增的成员
+	 */
+	public boolean addMember(long member, double score, int... ids);
+
+	/**
+	 * 批量增加，members和scores下标一一对应
+	 * @param members
+	 * @param scores
+	 * @param ids
+	 * @return 新增的成员数量
+	 */
+	public long addMembers(long[] members, double[] scores, int... ids);
+
+	/**
+	 * 查询成员对应的分值
+	 * @param member
+	 * @param ids
+	 * @return {@link IBaseZsetRedisDao#NO_MEMBER}：表示元素在zset中不存在
+	 */
+	public double scoreOf(long member, int... ids);
+
+	/**
+	 * 删除成员
+	 * @param member
+	 * @param ids
+	 * @return
+	 */
+	public boolean removeMember(long member, int... ids);
+
+	/**
+	 * 批量删除成员
+	 * @param members
+	 * @param ids
+	 * @return 删除的成员数量
+	 */
+	public long removeMembers(long[] members, int... ids);
+
+	/**
+	 * 按照下标查询，分值升序
+	 * @param start
+	 * @param end
+	 * @param ids
+	 * @return
+	 */
+	public long[] findMembersByIdAsc(long start, long end, int... ids);
+
+	/**
+	 * 按照下标查询，分值降序
+	 * @param start
+	 * @param end
+	 * @param ids
+	 * @return
+	 */
+	public long[] findMembersByIdDesc(long start, long end, int... ids);
+
+	/**
+	 * 按照分值查询（升序）
+	 * @param min
+	 * @param max
+	 * @param offset 从第几条开始
+	 * @param count
+	 * @param ids
+	 * @return
+	 */
+	public long[] findMembersByScoreAsc(double min, double max, long offset, long count, int... ids);
+
+	/**
+	 * 按照分值查询（降序）
+	 * @param min
+	 * @param max
+	 * @param offset 从第几条开始
+	 * @param count
+	 * @param ids
+	 * @return
+	 */
+	public long[] findMembersByScoreDesc(double min, double max, long offset, long count, int... ids);
+
+	/**
+	 * 按照下标查询成员和分值，分值升序
+	 * @param start
+	 * @param end
+	 * @param ids
+	 * @return 下一页从end + 1开始
+	 */
+	public LongZsetPage findPageByIdAsc(long start, long end, int... ids);
+
+	/**
+	 * 按照下标查询成员和分值，分值降序
+	 * @param start
+	 * @param end
+	 * @param ids
+	 * @return 下一页从end + 1开始
+	 */
+	public LongZsetPage findPageByIdDesc(long start, long end, int... ids);
+
+	/**
+	 * 按照分值查询成员和分值（升序）
+	 * @param min
+	 * @param max
+	 * @param offset
+	 * @param count
+	 * @param ids
+	 * @return 下一页的offset为offset + count
+	 */
+	public LongZsetPage findPageByScoreAsc(double min, double max, long offset, long count, int... ids);
+
+	/**
+	 * 按照分值查询成员和分值（降序）
+	 * @param min
+	 * @param max
+	 * @param offset
+	 * @param count
+	 * @param ids
+	 * @return 下一页的offset为offset + count
+	 */
+	public LongZsetPage findPageByScoreDesc(double min, double max, long offset, long count, int... ids);
+
+}
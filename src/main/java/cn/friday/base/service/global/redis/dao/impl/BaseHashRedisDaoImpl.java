@@ -1,37 +1,73 @@
 package cn.friday.base.service.global.redis.dao.impl;
 
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
+import org.apache.log4j.Logger;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnection;
-import org.springframework.data.redis.connection.StringRedisConnection;
 import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
+import cn.friday.base.service.global.redis.dao.IAsyncHashRedisDao;
 import cn.friday.base.service.global.redis.dao.IBaseHashRedisDao;
 import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
 import cn.friday.base.service.global.redis.loader.LoaderResult;
 import cn.friday.base.service.global.redis.loader.RedisLoader;
+import cn.friday.base.service.global.redis.mapper.IBaseRedisMapper;
+import cn.friday.base.service.global.redis.mapper.migration.HashField;
+import cn.friday.base.service.global.redis.mapper.migration.HashMigration;
 import cn.friday.base.service.global.redis.registry.RegistryService;
 import cn.friday.base.service.global.redis.support.cache.AbstractLocalCache;
+import cn.friday.base.service.global.redis.support.cache.CacheInvalidationPublisher;
+import cn.friday.base.service.global.redis.support.cache.CacheInvalidationReceiver;
+import cn.friday.base.service.global.redis.support.cache.HotKeyDetector;
+import cn.friday.base.service.global.redis.support.counter.CounterBuffer;
+import cn.friday.base.service.global.redis.support.executor.ExecutorRegistry;
+import cn.friday.base.service.global.redis.support.expire.ExpirePolicy;
+import cn.friday.base.service.global.redis.support.id.BlockIdAllocator;
+import cn.friday.base.service.global.redis.support.key.KeyTemplate;
+import cn.friday.base.service.global.redis.support.id.IdAllocator;
+import cn.friday.base.service.global.redis.support.pipeline.PipelineBatcher;
+import cn.friday.base.service.global.redis.support.pipeline.PipelineCommand;
+import cn.friday.base.service.global.redis.support.pubsub.MessageListenerContainerImpl;
+import cn.friday.base.service.global.redis.support.script.HashScripts;
+import cn.friday.base.service.global.redis.support.script.LuaScript;
 import cn.friday.base.service.global.redis.syncer.Syncer;
+import cn.friday.base.service.global.redis.syncer.WriteBehindQueue;
+import cn.friday.base.service.global.redis.util.AsciiCodec;
 import cn.friday.base.service.global.redis.util.Constant;
-import cn.friday.base.service.global.redis.util.MethodHelper;
 import cn.friday.base.service.global.redis.util.ReflectUtil;
 
-public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, IRedisOpsTemplate {
+public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, IAsyncHashRedisDao<T>, IRedisOpsTemplate {
+
+	private static final Logger logger = Logger.getLogger(BaseHashRedisDaoImpl.class);
 
 	private Class<T> entityClazz;
 
-	private String baseKey;
+	private KeyTemplate keyTemplate;
+
+	//空值标记的key
+	private KeyTemplate nullKeyTemplate;
 
 	//是否本地缓存
 	private boolean isLocalCache;
@@ -41,15 +77,109 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	private final static int DEFAULT_CAHCE_SECOND = 1;
 
+	/**
+	 * 默认本地缓存最大长度
+	 */
+	private final static int DEFAULT_MAX_CAHCE_SIZE = 200;
+
+	/**
+	 * 默认每个pipeline最多发送的命令数
+	 */
+	private final static int DEFAULT_PIPELINE_SIZE = 100;
+
 	//本地缓存时间
 	private int cacheTime;
 
+	//本地缓存后台刷新的时间
+	private int cacheRefreshTime;
+
+	//批量操作时每个pipeline的命令数
+	private int pipelineSize;
+
 	private volatile EntityLocalCache cache;
 
+	//id生成器
+	private volatile IdAllocator idAllocator;
+
+	//本地缓存失效通道
+	private String invalidationChannel;
+
+	private volatile CacheInvalidationPublisher invalidationPublisher;
+
+	//同步器合并写的时间窗口(毫秒)，小于等于0时每次保存都单独同步
+	private long writeBehindMillis;
+
+	//合并写最大积压数
+	private int writeBehindMaxBacklog;
+
+	private volatile WriteBehindQueue<T> writeBehindQueue;
+
+	//热点id的访问次数阈值，小于等于0时不探测热点，只在没有开启本地缓存时生效
+	private int hotKeyThreshold;
+
+	//热点id本地缓存的最大长度
+	private int hotKeyCapacity;
+
+	private volatile HotKeyDetector hotKeyDetector;
+
+	//过期时间策略，默认随机抖动防止同时过期
+	private ExpirePolicy expirePolicy;
+
+	//计数器本地合并的刷新间隔(毫秒)
+	private long counterFlushMillis;
+
+	//计数器本地合并的最大待刷新数
+	private int counterMaxPending;
+
+	private volatile CounterBuffer counterBuffer;
+
+	//异步接口使用的pipeline分发器
+	private volatile PipelineBatcher batcher;
+
+	//读取时发现旧数据是否写回redis，所有写入方都已经升级后再开启
+	private boolean readRepair;
+
+	//完整的hash直接从redis返回的字节解析，不经过字符串
+	private boolean rawDecode;
+
 	//对象锁
 	private Object lock = new Object();
 
-	private final ListeningExecutorService executorService;
+	/**
+	 * 默认等待其它线程加载的时间,3s
+	 */
+	private final static long DEFAULT_LOAD_TIMEOUT = 3000;
+
+	//等待其它线程加载的时间(毫秒)
+	private long loadTimeout;
+
+	/**
+	 * 默认空值标记的过期时间,60s
+	 */
+	private final static int DEFAULT_NULL_CACHE_SECOND = 60;
+
+	/**
+	 * 空值标记的后缀
+	 */
+	private final static String NULL_SUFFIX = ".Null";
+
+	/**
+	 * 本地缓存失效通道的后缀
+	 */
+	private final static String INVALIDATION_SUFFIX = ".Invalidate";
+
+	private final static String NULL_VALUE = "1";
+
+	/**
+	 * 存在空值标记
+	 */
+	private final static Object ABSENT = new Object();
+
+	//空值标记的过期时间(秒)
+	private int nullCacheSeconds;
+
+	//正在通过loader加载的id
+	private final ConcurrentMap<Long, FutureTask<T>> loadings = new ConcurrentHashMap<Long, FutureTask<T>>();
 
 	public BaseHashRedisDaoImpl(Class<T> entityClazz) {
 		this(entityClazz, false);
@@ -59,30 +189,79 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 		this.isLocalCache = isLocalCache;
 		this.entityClazz = entityClazz;
 		buildKey();
-		executorService = MoreExecutors
-				.listeningDecorator(MoreExecutors.getExitingExecutorService(new ThreadPoolExecutor(1,
-						MethodHelper.defaultMaxThreads(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>())));
 	}
 
 	@Override
 	public T findById(long id) {
-		if (isLocalCache) {
+		if (isLocalCache || isHotKey(id)) {
 			return obtainByCache(id);
 		} else {
 			return doGetById(id);
 		}
 	}
 
+	/**
+	 * 只查询部分属性，
+	 * 本地缓存中有完整实体时直接返回缓存的实体
+	 * @param id
+	 * @param properties 需要查询的属性
+	 * @return 只填充了查询属性的实体，所有属性都不存在时返回null
+	 */
+	@Override
+	public T findById(final long id, final String... properties) {
+		if (properties == null || properties.length == 0) {
+			return findById(id);
+		}
+		if (isLocalCache) {
+			T t = obtainByCacheIfPresent(id);
+			if (t != null) {
+				return t;
+			}
+		}
+		List<Object> values = stringRedisTemplate().execute(new RedisCallback<List<Object>>() {
+			@Override
+			public List<Object> doInRedis(RedisConnection connection) throws DataAccessException {
+				List<byte[]> raw = connection.hMGet(keyTemplate.key(id), rawFields(properties));
+				RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+				List<Object> values = new ArrayList<Object>(raw.size());
+				for (byte[] value : raw) {
+					values.add(serializer.deserialize(value));
+				}
+				return values;
+			}
+		});
+		return resolveFields(id, properties, values);
+	}
+
 	/**
 	 * 直接从redis获取
 	 * @param id
 	 * @return 
 	 */
-	private T doGetById(long id) {
-		String key = MessageFormat.format(baseKey, id + "");
-		Map<Object, Object> entityMap = stringRedisTemplate().opsForHash().entries(key);
+	private T doGetById(final long id) {
+		if (rawDecode) {
+			Map<byte[], byte[]> raw = stringRedisTemplate().execute(new RedisCallback<Map<byte[], byte[]>>() {
+				@Override
+				public Map<byte[], byte[]> doInRedis(RedisConnection connection) throws DataAccessException {
+					return connection.hGetAll(keyTemplate.key(id));
+				}
+			});
+			return readRawEntity(id, raw);
+		}
+		final byte[] key = keyTemplate.key(id);
+		Map<Object, Object> entityMap = stringRedisTemplate().execute(new RedisCallback<Map<Object, Object>>() {
+			@Override
+			public Map<Object, Object> doInRedis(RedisConnection connection) throws DataAccessException {
+				RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+				Map<Object, Object> entityMap = new LinkedHashMap<Object, Object>();
+				for (Map.Entry<byte[], byte[]> entry : connection.hGetAll(key).entrySet()) {
+					entityMap.put(serializer.deserialize(entry.getKey()), serializer.deserialize(entry.getValue()));
+				}
+				return entityMap;
+			}
+		});
 		entityMap.put("id", id);
-		return getBaseRedisMapper().fromObjectHash(entityMap);
+		return readEntity(id, entityMap, true);
 	}
 
 	/**
@@ -93,7 +272,7 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	@Override
 	public T findById(long id, RedisLoader<T> loader) {
 		T t = null;
-		if (isLocalCache) {
+		if (isLocalCache || isHotKey(id)) {
 			t = obtainByCache(id);
 		}
 
@@ -103,60 +282,283 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 		return t;
 	}
 
-	private T findByIdToRedis(long id, RedisLoader<T> loader) {
-		T t = doGetById(id);
+	/**
+	 * redis中不存在时通过loader加载，
+	 * 同一个id同一时刻只有一个线程加载，其它线程等待加载结果，
+	 * 不同id之间并行加载，只有等待超时时返回null，loader抛出的异常会抛给所有等待的线程
+	 * @param id
+	 * @param loader
+	 * @return 
+	 */
+	@SuppressWarnings("unchecked")
+	private T findByIdToRedis(final long id, final RedisLoader<T> loader) {
+		Object o = lookupWithNullMark(id);
+		if (o == ABSENT) {
+			return null;
+		}
+		T t = (T) o;
 		if (t == null) {
-			synchronized (lock) {
-				//双重检查锁
-				t = doGetById(id);
-				if (t == null) {
-					LoaderResult<T> loaderResult = loader.call();
-					if (loaderResult.getV() != null && loaderResult.isCache()) {
-						t = loaderResult.getV();
-						//缓存对应数据
-						save(t, id, loaderResult.getExpireTime());
-					}
+			FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return loadToRedis(id, loader);
+				}
+			});
+			FutureTask<T> loading = loadings.putIfAbsent(id, task);
+			if (loading == null) {
+				loading = task;
+				try {
+					task.run();
+				} finally {
+					loadings.remove(id, task);
 				}
 			}
+			try {
+				t = loading.get(getLoadTimeout(), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				logger.warn("wait for loading timeout, key:" + keyTemplate.keyString(id));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				//loader的异常原样抛给调用方，和直接调用loader时一致
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+		return t;
+	}
 
+	/**
+	 * 通过loader加载数据并缓存到redis，
+	 * loader也查不到时写入空值标记
+	 * @param id
+	 * @param loader
+	 * @return 
+	 */
+	@SuppressWarnings("unchecked")
+	private T loadToRedis(long id, RedisLoader<T> loader) {
+		//再检查一次，可能已经被上一次加载写入
+		Object o = lookupWithNullMark(id);
+		if (o == ABSENT) {
+			return null;
+		}
+		T t = (T) o;
+		if (t == null) {
+			LoaderResult<T> loaderResult = loader.call();
+			if (loaderResult.getV() == null) {
+				markAbsent(id);
+			} else if (loaderResult.isCache()) {
+				t = loaderResult.getV();
+				//缓存对应数据
+				saveWithExpire(t, id, loaderResult.getExpireTime());
+			}
 		}
 		return t;
 	}
 
+	/**
+	 * 查询实体，同时检查空值标记，
+	 * 两个命令在一个pipeline中发送
+	 * @param id
+	 * @return 实体；{@link #ABSENT}表示存在空值标记；null表示都不存在
+	 */
+	private Object lookupWithNullMark(final long id) {
+		if (getNullCacheSeconds() <= 0) {
+			return doGetById(id);
+		}
+		List<Object> replies = stringRedisTemplate().executePipelined(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.hGetAll(keyTemplate.key(id));
+				connection.exists(nullKeyTemplate.key(id));
+				return null;
+			}
+		});
+		T t = resolveHash(id, replies.get(0));
+		if (t != null) {
+			return t;
+		}
+		return Boolean.TRUE.equals(replies.get(1)) ? ABSENT : null;
+	}
+
+	/**
+	 * 写入空值标记
+	 * @param id 
+	 */
+	private void markAbsent(long id) {
+		final byte[] key = nullKeyTemplate.key(id);
+		final byte[] value = stringRedisTemplate().getStringSerializer().serialize(NULL_VALUE);
+		final long seconds = getExpirePolicy().apply(getNullCacheSeconds());
+		stringRedisTemplate().execute(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.setEx(key, seconds, value);
+				return null;
+			}
+		});
+	}
+
 	/**
 	 * 一次性查询多个id
-	 * 存在bug不能用
+	 * @see #multiFindByIds(Collection)
 	 * @param ids
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	@Deprecated
 	public List<T> multiFindByIds(final List<Long> ids) {
-		List<Object> results = stringRedisTemplate().executePipelined(new RedisCallback<List<T>>() {
-			@Override
-			public List<T> doInRedis(RedisConnection connection) throws DataAccessException {
+		return new ArrayList<T>(multiFindByIds((Collection<Long>) ids).values());
+	}
+
+	/**
+	 * 一次性查询多个id
+	 * 先查本地缓存，未命中的id通过pipeline批量HGETALL，
+	 * 每个pipeline最多发送{@link #getPipelineSize()}条命令
+	 * @param ids
+	 * @return 按照ids的顺序返回，不存在的id不返回
+	 */
+	@Override
+	public Map<Long, T> multiFindByIds(Collection<Long> ids) {
+		return multiFind(ids, null);
+	}
+
+	/**
+	 * 一次性查询多个id的部分属性，
+	 * 本地缓存中有完整实体时直接返回缓存的实体
+	 * @param ids
+	 * @param properties 需要查询的属性
+	 * @return 按照ids的顺序返回，只填充了查询的属性
+	 */
+	@Override
+	public Map<Long, T> multiFindByIds(Collection<Long> ids, String... properties) {
+		if (properties == null || properties.length == 0) {
+			return multiFindByIds(ids);
+		}
+		return multiFind(ids, properties);
+	}
+
+	/**
+	 * 批量查询
+	 * @param ids
+	 * @param properties 为null时HGETALL查询完整实体，否则HMGET查询对应属性
+	 * @return 
+	 */
+	private Map<Long, T> multiFind(Collection<Long> ids, final String[] properties) {
+		Map<Long, T> result = new LinkedHashMap<Long, T>();
+		if (ids == null || ids.isEmpty()) {
+			return result;
+		}
+
+		List<Long> missIds = new ArrayList<Long>();
+		for (Long id : ids) {
+			if (id == null || result.containsKey(id)) {
+				continue;
+			}
+			T t = null;
+			if (isLocalCache) {
+				t = obtainByCacheIfPresent(id);
+			}
+			//先占位，保证返回的顺序
+			result.put(id, t);
+			if (t == null) {
+				missIds.add(id);
+			}
+		}
 
-				List<T> list = new ArrayList<T>();
-				StringRedisConnection stringRedisConn = (StringRedisConnection) connection;
+		final byte[][] fields = properties == null ? null : rawFields(properties);
+		for (final List<Long> partition : Lists.partition(missIds, getPipelineSize())) {
+			RedisCallback<Object> callback = new RedisCallback<Object>() {
+				@Override
+				public Object doInRedis(RedisConnection connection) throws DataAccessException {
+					for (long id : partition) {
+						byte[] key = keyTemplate.key(id);
+						if (fields == null) {
+							connection.hGetAll(key);
+						} else {
+							connection.hMGet(key, fields);
+						}
+					}
+					return null;
+				}
+			};
+			List<Object> replies = rawDecode ? executeRawPipelined(callback)
+					: stringRedisTemplate().executePipelined(callback);
 
-				for (long id : ids) {
-					String key = MessageFormat.format(baseKey, id + "");
-					System.out.println(key);
-					Map<String, String> map = stringRedisConn.hGetAll(key);
-					map.put("id", id + "");
-					list.add(getBaseRedisMapper().fromHash(map));
+			for (int i = 0; i < partition.size(); i++) {
+				long id = partition.get(i);
+				T t = fields == null ? resolveHash(id, replies.get(i)) : resolveFields(id, properties, replies.get(i));
+				if (t != null) {
+					result.put(id, t);
+					if (isLocalCache && fields == null) {
+						initLocalCache().put(t, keyTemplate.keyString(id));
+					}
 				}
+			}
+		}
 
-				return list;
+		Iterator<Map.Entry<Long, T>> iterator = result.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getValue() == null) {
+				iterator.remove();
 			}
-		});
-		List<T> list = new ArrayList<T>();
-		for (Object o : results) {
-			T t = (T) o;
-			list.add(t);
 		}
-		return list;
+		return result;
+	}
+
+	/**
+	 * 解析pipeline返回的hash
+	 * @param id
+	 * @param reply
+	 * @return 
+	 */
+	@SuppressWarnings("unchecked")
+	private T resolveHash(long id, Object reply) {
+		if (!(reply instanceof Map)) {
+			return null;
+		}
+		if (rawDecode) {
+			return readRawEntity(id, (Map<byte[], byte[]>) reply);
+		}
+		Map<Object, Object> entityMap = new HashMap<Object, Object>((Map<Object, Object>) reply);
+		entityMap.put("id", id);
+		return readEntity(id, entityMap, true);
+	}
+
+	/**
+	 * 解析HMGET返回的属性
+	 * @param id
+	 * @param properties
+	 * @param reply
+	 * @return 所有属性都不存在时返回null
+	 */
+	private T resolveFields(long id, String[] properties, Object reply) {
+		if (!(reply instanceof List)) {
+			return null;
+		}
+		List<?> values = (List<?>) reply;
+		Map<Object, Object> entityMap = new HashMap<Object, Object>();
+		for (int i = 0; i < properties.length && i < values.size(); i++) {
+			Object value = values.get(i);
+			if (value instanceof byte[]) {
+				value = AsciiCodec.toString((byte[]) value);
+			}
+			if (value != null) {
+				entityMap.put(properties[i], value);
+			}
+		}
+		if (entityMap.isEmpty()) {
+			return null;
+		}
+		entityMap.put("id", id);
+		return readEntity(id, entityMap, false);
+	}
+
+	private byte[][] rawFields(String[] properties) {
+		RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+		byte[][] fields = new byte[properties.length][];
+		for (int i = 0; i < properties.length; i++) {
+			fields[i] = serializer.serialize(properties[i]);
+		}
+		return fields;
 	}
 
 	/**
@@ -168,11 +570,9 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	@Override
 	public long save(T t) {
 		//生成id
-		String keyName = createKeyName();
-		long id = makeId(keyName);
-		Map<String, String> map = getBaseRedisMapper().toHash(t);
-		String key = MessageFormat.format(baseKey, id + "");
-		stringRedisTemplate().opsForHash().putAll(key, map);
+		long id = getIdAllocator().nextId();
+		putAll(id, getBaseRedisMapper().toHash(t));
+		invalidateLocalCache(id);
 		return id;
 	}
 
@@ -186,7 +586,7 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	public long save(T t, Syncer<T> syncer) {
 		long id = save(t);
 		//异步同步数据
-		asyncData(id, syncer);
+		asyncData(id, t, syncer);
 		return id;
 	}
 
@@ -198,9 +598,9 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long save(T t, final int expireTime) {
-		long id = save(t);
-		final String key = MessageFormat.format(baseKey, id + "");
-		MethodHelper.expire(stringRedisTemplate(), key, expireTime);
+		long id = getIdAllocator().nextId();
+		saveWithExpire(t, id, expireTime);
+		invalidateLocalCache(id);
 		return id;
 	}
 
@@ -213,9 +613,8 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long save(T t, final int expireTime, Syncer<T> syncer) {
-		long id = save(t, syncer);
-		final String key = MessageFormat.format(baseKey, id + "");
-		MethodHelper.expire(stringRedisTemplate(), key, expireTime);
+		long id = save(t, expireTime);
+		asyncData(id, t, syncer);
 		return id;
 	}
 
@@ -228,9 +627,8 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long save(T t, long id) {
-		Map<String, String> map = getBaseRedisMapper().toHash(t);
-		String key = MessageFormat.format(baseKey, id + "");
-		stringRedisTemplate().opsForHash().putAll(key, map);
+		putAll(id, getBaseRedisMapper().toHash(t));
+		invalidateLocalCache(id);
 		return id;
 	}
 
@@ -244,7 +642,7 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	@Override
 	public long save(T t, long id, Syncer<T> syncer) {
 		save(t, id);
-		asyncData(id, syncer);
+		asyncData(id, t, syncer);
 		return id;
 	}
 
@@ -257,9 +655,8 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long save(T t, long id, final int expireTime) {
-		save(t, id);
-		final String key = MessageFormat.format(baseKey, id + "");
-		MethodHelper.expire(stringRedisTemplate(), key, expireTime);
+		saveWithExpire(t, id, expireTime);
+		invalidateLocalCache(id);
 		return id;
 	}
 
@@ -273,12 +670,172 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long save(T t, long id, final int expireTime, Syncer<T> syncer) {
-		save(t, id, syncer);
-		final String key = MessageFormat.format(baseKey, id + "");
-		MethodHelper.expire(stringRedisTemplate(), key, expireTime);
+		saveWithExpire(t, id, expireTime);
+		invalidateLocalCache(id);
+		asyncData(id, t, syncer);
 		return id;
 	}
 
+	/**
+	 * 通过lua脚本在一次请求中写入hash并设置过期时间
+	 * @param t
+	 * @param id
+	 * @param expireTime 
+	 */
+	private void saveWithExpire(T t, long id, int expireTime) {
+		Map<String, String> map = getBaseRedisMapper().toHash(t);
+		if (map.isEmpty()) {
+			return;
+		}
+		HashScripts.SAVE_WITH_EXPIRE.execute(stringRedisTemplate(), 1,
+				saveArgs(id, map, getExpirePolicy().apply(expireTime)));
+	}
+
+	/**
+	 * {@link HashScripts#SAVE_WITH_EXPIRE}的key和参数
+	 * @param id
+	 * @param map
+	 * @param seconds 过期时间，小于等于0不设置
+	 * @return
+	 */
+	private byte[][] saveArgs(long id, Map<String, String> map, long seconds) {
+		RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+		byte[][] keysAndArgs = new byte[map.size() * 2 + 2][];
+		keysAndArgs[0] = keyTemplate.key(id);
+		keysAndArgs[1] = AsciiCodec.formatLong(seconds);
+		int i = 2;
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			keysAndArgs[i++] = serializer.serialize(entry.getKey());
+			keysAndArgs[i++] = serializer.serialize(entry.getValue());
+		}
+		return keysAndArgs;
+	}
+
+	/**
+	 * 批量保存有id的实体
+	 * 所有实体先转换成hash，再通过pipeline批量写入HMSET和EXPIRE
+	 * @param entities
+	 * @param expireTime 过期时间(秒)，小于等于0表示不过期
+	 * @return 保存的id
+	 */
+	@Override
+	public List<Long> saveAll(Map<Long, T> entities, final int expireTime) {
+		List<Long> ids = new ArrayList<Long>();
+		if (entities == null || entities.isEmpty()) {
+			return ids;
+		}
+		Map<Long, Map<String, String>> hashes = new LinkedHashMap<Long, Map<String, String>>();
+		for (Map.Entry<Long, T> entry : entities.entrySet()) {
+			hashes.put(entry.getKey(), getBaseRedisMapper().toHash(entry.getValue()));
+			ids.add(entry.getKey());
+		}
+		pipelinedSave(hashes, expireTime);
+		return ids;
+	}
+
+	/**
+	 * 批量保存新的实体，
+	 * 通过{@link IdAllocator}一次性生成所有的id
+	 * @param entities
+	 * @param expireTime 过期时间(秒)，小于等于0表示不过期
+	 * @return 按照entities的顺序返回生成的id
+	 */
+	@Override
+	public List<Long> saveAll(Collection<T> entities, final int expireTime) {
+		List<Long> ids = new ArrayList<Long>();
+		if (entities == null || entities.isEmpty()) {
+			return ids;
+		}
+		long[] newIds = getIdAllocator().nextIds(entities.size());
+		Map<Long, Map<String, String>> hashes = new LinkedHashMap<Long, Map<String, String>>();
+		int i = 0;
+		for (T t : entities) {
+			long id = newIds[i++];
+			hashes.put(id, getBaseRedisMapper().toHash(t));
+			ids.add(id);
+		}
+		pipelinedSave(hashes, expireTime);
+		return ids;
+	}
+
+	/**
+	 * 通过pipeline批量写入hash和过期时间
+	 * @param hashes
+	 * @param expireTime 
+	 */
+	private void pipelinedSave(Map<Long, Map<String, String>> hashes, final int expireTime) {
+		for (final List<Map.Entry<Long, Map<String, String>>> partition : Lists
+				.partition(new ArrayList<Map.Entry<Long, Map<String, String>>>(hashes.entrySet()), getPipelineSize())) {
+			stringRedisTemplate().executePipelined(new RedisCallback<Object>() {
+				@Override
+				public Object doInRedis(RedisConnection connection) throws DataAccessException {
+					for (Map.Entry<Long, Map<String, String>> entry : partition) {
+						if (entry.getValue().isEmpty()) {
+							continue;
+						}
+						byte[] key = keyTemplate.key(entry.getKey());
+						connection.hMSet(key, rawHash(entry.getValue()));
+						if (expireTime > 0) {
+							connection.expire(key, getExpirePolicy().apply((long) expireTime));
+						}
+					}
+					return null;
+				}
+			});
+			//和save()一样，写入完成后再失效本地缓存，避免在写入之前重新加载旧数据
+			for (Map.Entry<Long, Map<String, String>> entry : partition) {
+				invalidateLocalCache(entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * 写入hash，和opsForHash().putAll()一样没有属性时不写入
+	 * @param id
+	 * @param map 
+	 */
+	private void putAll(long id, Map<String, String> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		final byte[] key = keyTemplate.key(id);
+		final Map<byte[], byte[]> hash = rawHash(map);
+		stringRedisTemplate().execute(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.hMSet(key, hash);
+				return null;
+			}
+		});
+	}
+
+	private Map<byte[], byte[]> rawHash(Map<String, String> map) {
+		RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+		Map<byte[], byte[]> hash = new HashMap<byte[], byte[]>(map.size() * 2);
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			hash.put(serializer.serialize(entry.getKey()), serializer.serialize(entry.getValue()));
+		}
+		return hash;
+	}
+
+	/**
+	 * 查询一个属性
+	 * @param id
+	 * @param field
+	 * @return 不存在时返回null
+	 */
+	private String hashGet(long id, String field) {
+		final byte[] key = keyTemplate.key(id);
+		final RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+		final byte[] rawField = serializer.serialize(field);
+		return stringRedisTemplate().execute(new RedisCallback<String>() {
+			@Override
+			public String doInRedis(RedisConnection connection) throws DataAccessException {
+				return serializer.deserialize(connection.hGet(key, rawField));
+			}
+		});
+	}
+
 	/**
 	 * 判断id是否存在
 	 * @param id
@@ -286,8 +843,13 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public boolean exists(long id) {
-		String key = MessageFormat.format(baseKey, id + "");
-		return stringRedisTemplate().hasKey(key);
+		final byte[] key = keyTemplate.key(id);
+		return stringRedisTemplate().execute(new RedisCallback<Boolean>() {
+			@Override
+			public Boolean doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.exists(key);
+			}
+		});
 	}
 
 	/**
@@ -298,11 +860,11 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long ttl(long id) {
-		final String key = MessageFormat.format(baseKey, id + "");
+		final byte[] key = keyTemplate.key(id);
 		return stringRedisTemplate().execute(new RedisCallback<Long>() {
 			@Override
 			public Long doInRedis(RedisConnection connection) throws DataAccessException {
-				return connection.ttl(key.getBytes());
+				return connection.ttl(key);
 			}
 		});
 	}
@@ -314,8 +876,15 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long deleteById(long id) {
-		String key = MessageFormat.format(baseKey, id + "");
-		stringRedisTemplate().delete(key);
+		final byte[] key = keyTemplate.key(id);
+		stringRedisTemplate().execute(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.del(key);
+				return null;
+			}
+		});
+		invalidateLocalCache(id);
 		return id;
 	}
 
@@ -330,10 +899,7 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long updateByProperty(String propertyName, Object value, long id) {
-		if (exists(id)) {
-			String key = MessageFormat.format(baseKey, id + "");
-			stringRedisTemplate().opsForHash().put(key, propertyName, String.valueOf(value));
-		}
+		updateByPropertyIfExists(propertyName, value, id);
 		return id;
 	}
 
@@ -348,43 +914,210 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	@Override
 	public long updateByMap(Map<String, String> map, long id) {
-		if (exists(id)) {
-			String key = MessageFormat.format(baseKey, id + "");
-			stringRedisTemplate().opsForHash().putAll(key, map);
-		}
+		updateByMapIfExists(map, id);
 		return id;
 	}
 
 	/**
-	 * 增加某一个field的值
-	 * @param haskField
-	 * @param delta 负数表示减
+	 * key存在时才更新一个值，
+	 * 检查和写入在一个lua脚本中完成
+	 * @param propertyName
+	 * @param value
 	 * @param id
-	 * @return
+	 * @return 是否已更新
 	 */
 	@Override
-	public long increment(String haskField, long delta, long id) {
-		String key = MessageFormat.format(baseKey, id + "");
-		return stringRedisTemplate().opsForHash().increment(key, haskField, delta);
+	public boolean updateByPropertyIfExists(String propertyName, Object value, long id) {
+		Map<String, String> map = new HashMap<String, String>();
+		map.put(propertyName, String.valueOf(value));
+		return updateByMapIfExists(map, id);
 	}
 
 	/**
-	 * 查询某一个属性对应的值
-	 * @param propertyName
+	 * key存在时才更新多个属性，
+	 * 检查和写入在一个lua脚本中完成
+	 * @param map
 	 * @param id
-	 * @return
+	 * @return 是否已更新
 	 */
 	@Override
-	public Object findByProperty(String propertyName, long id) {
-		String key = MessageFormat.format(baseKey, id + "");
-		return stringRedisTemplate().opsForHash().get(key, propertyName);
+	public boolean updateByMapIfExists(Map<String, String> map, long id) {
+		if (map == null || map.isEmpty()) {
+			return false;
+		}
+		map = migrateFields(map);
+		RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+		byte[][] keysAndArgs = new byte[map.size() * 2 + 1][];
+		keysAndArgs[0] = keyTemplate.key(id);
+		int i = 1;
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			keysAndArgs[i++] = serializer.serialize(entry.getKey());
+			keysAndArgs[i++] = serializer.serialize(entry.getValue());
+		}
+		Long applied = HashScripts.UPDATE_IF_EXISTS.execute(stringRedisTemplate(), 1, keysAndArgs);
+		invalidateLocalCache(id);
+		return applied != null && applied == 1;
 	}
 
 	/**
-	 * 
-	 * @param propertyName
-	 * @param id
-	 * @param loader (重新reloader器)
+	 * 部分更新的属性按照迁移规则转换成当前格式再写入，
+	 * 否则已经标记为当前版本的hash中会混入旧格式的属性，读取时不再检查而解析错误
+	 * @param map
+	 * @return
+	 */
+	private Map<String, String> migrateFields(Map<String, String> map) {
+		HashMigration migration = getBaseRedisMapper().getMigration();
+		if (migration.isEmpty()) {
+			return map;
+		}
+		Map<String, String> migrated = new LinkedHashMap<String, String>(map.size() * 4 / 3 + 1);
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			HashField field = entry.getValue() == null ? null : migration.migrate(entry.getKey(), entry.getValue());
+			if (field == null) {
+				migrated.put(entry.getKey(), entry.getValue());
+			} else {
+				migrated.put(field.getField(), field.getValue());
+			}
+		}
+		return migrated;
+	}
+
+	/**
+	 * 批量更新，key存在时才更新，
+	 * 所有更新通过pipeline发送
+	 * @param updates id对应要更新的属性
+	 * @return id对应是否已更新
+	 */
+	@Override
+	public Map<Long, Boolean> updateByMapIfExists(Map<Long, Map<String, String>> updates) {
+		Map<Long, Boolean> result = new LinkedHashMap<Long, Boolean>();
+		if (updates == null || updates.isEmpty()) {
+			return result;
+		}
+		List<Map.Entry<Long, Map<String, String>>> entries = new ArrayList<Map.Entry<Long, Map<String, String>>>();
+		for (Map.Entry<Long, Map<String, String>> entry : updates.entrySet()) {
+			if (entry.getValue() == null || entry.getValue().isEmpty()) {
+				result.put(entry.getKey(), false);
+			} else {
+				entries.add(Maps.immutableEntry(entry.getKey(), migrateFields(entry.getValue())));
+			}
+		}
+
+		HashScripts.UPDATE_IF_EXISTS.load(stringRedisTemplate());
+		for (List<Map.Entry<Long, Map<String, String>>> partition : Lists.partition(entries, getPipelineSize())) {
+			List<Object> replies;
+			try {
+				replies = pipelinedUpdate(partition);
+			} catch (RuntimeException e) {
+				if (!LuaScript.isNoScriptError(e)) {
+					throw e;
+				}
+				//redis重启后脚本丢失，重新加载后再执行一次
+				HashScripts.UPDATE_IF_EXISTS.reload(stringRedisTemplate());
+				replies = pipelinedUpdate(partition);
+			}
+			for (int i = 0; i < partition.size(); i++) {
+				Object reply = replies.get(i);
+				result.put(partition.get(i).getKey(), reply instanceof Long && (Long) reply == 1);
+				invalidateLocalCache(partition.get(i).getKey());
+			}
+		}
+		return result;
+	}
+
+	private List<Object> pipelinedUpdate(final List<Map.Entry<Long, Map<String, String>>> partition) {
+		final RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+		return stringRedisTemplate().executePipelined(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				for (Map.Entry<Long, Map<String, String>> entry : partition) {
+					byte[][] keysAndArgs = new byte[entry.getValue().size() * 2 + 1][];
+					keysAndArgs[0] = keyTemplate.key(entry.getKey());
+					int i = 1;
+					for (Map.Entry<String, String> field : entry.getValue().entrySet()) {
+						keysAndArgs[i++] = serializer.serialize(field.getKey());
+						keysAndArgs[i++] = serializer.serialize(field.getValue());
+					}
+					HashScripts.UPDATE_IF_EXISTS.evalSha(connection, 1, keysAndArgs);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 增加某一个field的值
+	 * @param haskField
+	 * @param delta 负数表示减
+	 * @param id
+	 * @return
+	 */
+	@Override
+	public long increment(String haskField, final long delta, long id) {
+		final byte[] key = keyTemplate.key(id);
+		final byte[] field = stringRedisTemplate().getStringSerializer().serialize(haskField);
+		long value = stringRedisTemplate().execute(new RedisCallback<Long>() {
+			@Override
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.hIncrBy(key, field, delta);
+			}
+		});
+		invalidateLocalCache(id);
+		return value;
+	}
+
+	@Override
+	public void incrementBuffered(String haskField, long delta, long id) {
+		getCounterBuffer().add(id, haskField, delta);
+	}
+
+	@Override
+	public long findCounter(String haskField, long id) {
+		if (counterBuffer != null) {
+			return counterBuffer.get(id, haskField);
+		}
+		String value = hashGet(id, haskField);
+		return value == null ? 0 : Long.parseLong(value);
+	}
+
+	private CounterBuffer getCounterBuffer() {
+		if (counterBuffer == null) {
+			synchronized (lock) {
+				if (counterBuffer == null) {
+					counterBuffer = new CounterBuffer(this, entityClazz.getSimpleName(), getCounterFlushMillis(),
+							getCounterMaxPending()) {
+						@Override
+						protected byte[] key(long id) {
+							return keyTemplate.key(id);
+						}
+
+						@Override
+						protected void flushed(long id) {
+							invalidateLocalCache(id);
+						}
+					};
+				}
+			}
+		}
+		return counterBuffer;
+	}
+
+	/**
+	 * 查询某一个属性对应的值
+	 * @param propertyName
+	 * @param id
+	 * @return
+	 */
+	@Override
+	public Object findByProperty(String propertyName, long id) {
+		return hashGet(id, propertyName);
+	}
+
+	/**
+	 * 
+	 * @param propertyName
+	 * @param id
+	 * @param loader (重新reloader器)
 	 * @return 
 	 */
 	@Override
@@ -406,8 +1139,7 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 					o = obtainValueByObjectProperty(t, propertyName);
 				}
 			} else {
-				String key = MessageFormat.format(baseKey, id + "");
-				o = stringRedisTemplate().opsForHash().get(key, propertyName);
+				o = hashGet(id, propertyName);
 			}
 		}
 		return o;
@@ -431,6 +1163,17 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 		return o;
 	}
 
+	/**
+	 * 从缓存中获取数据，不存在时不加载
+	 * 
+	 * @param id
+	 * @return 
+	 */
+	private T obtainByCacheIfPresent(long id) {
+		String key = keyTemplate.keyString(id);
+		return initLocalCache().getIfPresent(key);
+	}
+
 	/**
 	 * 从缓存中获取数据
 	 * 
@@ -440,7 +1183,7 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	private T obtainByCache(long id) {
 		T t = null;
 		//需要本地缓存
-		String key = MessageFormat.format(baseKey, id + "");
+		String key = keyTemplate.keyString(id);
 		try {
 			t = initLocalCache().get(key);
 		} catch (Exception e) {
@@ -455,6 +1198,97 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 		return keyName;
 	}
 
+	/**
+	 * 失效本地缓存，并通知其它节点失效
+	 * @param id 
+	 */
+	private void invalidateLocalCache(long id) {
+		if (!isLocalCache && getHotKeyThreshold() <= 0) {
+			return;
+		}
+		if (cache != null) {
+			cache.invalidate(keyTemplate.keyString(id));
+		}
+		getInvalidationPublisher().publish(String.valueOf(id));
+	}
+
+	/**
+	 * 没有开启本地缓存时，记录访问频率并判断是否热点，
+	 * 热点id使用本地缓存，冷却后从本地缓存中移除
+	 * @param id
+	 * @return 
+	 */
+	private boolean isHotKey(long id) {
+		HotKeyDetector detector = getHotKeyDetector();
+		return detector != null && detector.record(id);
+	}
+
+	/**
+	 * 热点探测器，没有开启热点探测或者已经开启本地缓存时返回null
+	 * @return 
+	 */
+	public HotKeyDetector getHotKeyDetector() {
+		if (isLocalCache || getHotKeyThreshold() <= 0) {
+			return null;
+		}
+		if (hotKeyDetector == null) {
+			synchronized (lock) {
+				if (hotKeyDetector == null) {
+					hotKeyDetector = new HotKeyDetector(getHotKeyThreshold(), getHotKeyCapacity() * 16,
+							new HotKeyDetector.Listener() {
+								@Override
+								public void onDemote(long id) {
+									if (cache != null) {
+										cache.invalidate(keyTemplate.keyString(id));
+									}
+								}
+							});
+				}
+			}
+		}
+		return hotKeyDetector;
+	}
+
+	/**
+	 * 当前的热点id及访问频率
+	 * @return 
+	 */
+	public Map<Long, Integer> getHotKeys() {
+		HotKeyDetector detector = getHotKeyDetector();
+		if (detector == null) {
+			return Collections.emptyMap();
+		}
+		return detector.getHotKeys();
+	}
+
+	private CacheInvalidationPublisher getInvalidationPublisher() {
+		if (invalidationPublisher == null) {
+			synchronized (lock) {
+				if (invalidationPublisher == null) {
+					invalidationPublisher = new CacheInvalidationPublisher(this, invalidationChannel);
+				}
+			}
+		}
+		return invalidationPublisher;
+	}
+
+	/**
+	 * 本地缓存失效消息的订阅者，
+	 * 需要注册到{@link MessageListenerContainerImpl}中，
+	 * 其它节点修改数据后会失效当前节点的本地缓存
+	 * @return 
+	 */
+	public CacheInvalidationReceiver getCacheInvalidationReceiver() {
+		return new CacheInvalidationReceiver(invalidationChannel) {
+			@Override
+			protected void invalidate(String id) {
+				if (cache != null) {
+					cache.invalidate(keyTemplate.keyString(id));
+				}
+			}
+		};
+	}
+
 	/**
 	 * 初始化本地缓存
 	 */
@@ -462,7 +1296,11 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 		if (cache == null) {
 			synchronized (lock) {
 				if (cache == null) {
-					cache = new EntityLocalCache(getCacheTime());
+					EntityLocalCache localCache = new EntityLocalCache(
+							isLocalCache ? DEFAULT_MAX_CAHCE_SIZE : getHotKeyCapacity(), getCacheTime(),
+							getCacheRefreshTime());
+					localCache.setNullCacheSecond(Math.max(getNullCacheSeconds(), 0));
+					cache = localCache;
 				}
 			}
 		}
@@ -470,36 +1308,275 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	}
 
 	/**
-	 * 异步同步数据
+	 * hash转换成实体，开启了读修复时把迁移后的属性异步写回redis
 	 * @param id
-	 * @param syncer 
+	 * @param entityMap
+	 * @param complete 是否为完整的hash，只有完整的hash才标记版本号
+	 * @return
+	 */
+	private T readEntity(long id, Map<Object, Object> entityMap, boolean complete) {
+		IBaseRedisMapper<T> mapper = getBaseRedisMapper();
+		if (!readRepair) {
+			return mapper.fromObjectHash(entityMap);
+		}
+		List<HashField> repairs = new ArrayList<HashField>(0);
+		T t = mapper.fromObjectHash(entityMap, repairs);
+		Object marker = complete ? entityMap.get(HashMigration.VERSION_FIELD) : null;
+		afterRead(id, t, mapper.getMigration(), repairs, marker, complete);
+		return t;
+	}
+
+	/**
+	 * redis返回的完整hash直接转换成实体，不经过字符串
+	 * @param id
+	 * @param raw
+	 * @return
 	 */
-	private void asyncData(long id, Syncer<T> syncer) {
-		T t = doGetById(id);
+	private T readRawEntity(long id, Map<byte[], byte[]> raw) {
+		IBaseRedisMapper<T> mapper = getBaseRedisMapper();
+		if (!readRepair) {
+			return mapper.fromRawHash(raw, id, null);
+		}
+		List<HashField> repairs = new ArrayList<HashField>(0);
+		T t = mapper.fromRawHash(raw, id, repairs);
 		if (t != null) {
-			//异步同步数据
-			executorService.execute(new SyncExecutor<T>(syncer, t));
+			afterRead(id, t, mapper.getMigration(), repairs, HashMigration.version(raw), true);
 		}
+		return t;
 	}
 
-	private long makeId(final String key) {
+	private void afterRead(long id, T t, HashMigration migration, List<HashField> repairs, Object marker,
+			boolean complete) {
+		boolean mark = complete && !migration.isCurrent(marker);
+		if (t != null && (mark || !repairs.isEmpty())) {
+			repair(id, repairs, mark ? migration.getVersionString() : "");
+		}
+	}
 
-		return stringRedisTemplate().execute(new RedisCallback<Long>() {
+	/**
+	 * 在连接上直接执行pipeline，返回的结果不经过模板的反序列化
+	 * @param callback
+	 * @return
+	 */
+	private List<Object> executeRawPipelined(final RedisCallback<?> callback) {
+		return stringRedisTemplate().execute(new RedisCallback<List<Object>>() {
 			@Override
-			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+			public List<Object> doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.openPipeline();
+				boolean closed = false;
+				try {
+					callback.doInRedis(connection);
+					List<Object> replies = connection.closePipeline();
+					closed = true;
+					return replies;
+				} finally {
+					if (!closed) {
+						connection.closePipeline();
+					}
+				}
+			}
+		});
+	}
 
-				long id = connection.incr(key.getBytes());
+	/**
+	 * 异步写回迁移后的属性，原值被修改过的属性不写回，
+	 * 队列满时丢弃，下次读取时会再次发现
+	 * @param id
+	 * @param repairs
+	 * @param version 为空时不标记版本号
+	 */
+	private void repair(final long id, List<HashField> repairs, String version) {
+		RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+		final byte[][] keysAndArgs = new byte[repairs.size() * 4 + 3][];
+		keysAndArgs[0] = keyTemplate.key(id);
+		keysAndArgs[1] = serializer.serialize(HashMigration.VERSION_FIELD);
+		keysAndArgs[2] = serializer.serialize(version);
+		int i = 3;
+		for (HashField field : repairs) {
+			keysAndArgs[i++] = serializer.serialize(field.getOriginalField());
+			keysAndArgs[i++] = serializer.serialize(field.getOriginalValue());
+			keysAndArgs[i++] = serializer.serialize(field.getField());
+			keysAndArgs[i++] = serializer.serialize(field.getValue());
+		}
+		ExecutorRegistry.getExecutor(ExecutorRegistry.READ_REPAIR).execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					HashScripts.MIGRATE_IF_EXISTS.execute(stringRedisTemplate(), 1, keysAndArgs);
+				} catch (RuntimeException e) {
+					logger.warn("repair legacy hash failed, key:" + keyTemplate.keyString(id), e);
+				}
+			}
+		});
+	}
 
-				if ((id + 75807) >= Long.MAX_VALUE) {
-					// 避免溢出，重置，getSet命令之前允许incr插队，75807就是预留的插队空间
-					stringRedisTemplate().opsForValue().set(key, "0");
+	/**
+	 * 异步同步数据，
+	 * 直接用保存的实体和id构造同步的数据，不再从redis重新读取
+	 * @param id
+	 * @param t
+	 * @param syncer 
+	 */
+	private void asyncData(long id, T t, Syncer<T> syncer) {
+		Map<Object, Object> entityMap = new HashMap<Object, Object>(getBaseRedisMapper().toHash(t));
+		entityMap.put("id", id);
+		T entity = getBaseRedisMapper().fromObjectHash(entityMap);
+		if (entity == null) {
+			return;
+		}
+		if (getWriteBehindMillis() > 0) {
+			//合并后批量同步
+			getWriteBehindQueue().submit(id, entity, syncer);
+		} else {
+			ExecutorRegistry.getExecutor(ExecutorRegistry.SYNC).execute(new SyncExecutor<T>(syncer, entity));
+		}
+	}
+
+	/**
+	 * 合并写的同步队列，开启write behind后使用
+	 * @return 
+	 */
+	public WriteBehindQueue<T> getWriteBehindQueue() {
+		if (writeBehindQueue == null) {
+			synchronized (lock) {
+				if (writeBehindQueue == null) {
+					writeBehindQueue = new WriteBehindQueue<T>(entityClazz.getSimpleName(), getWriteBehindMillis(),
+							getWriteBehindMaxBacklog());
+				}
+			}
+		}
+		return writeBehindQueue;
+	}
+
+	@Override
+	public CompletableFuture<T> findByIdAsync(final long id) {
+		if (isLocalCache) {
+			T t = obtainByCacheIfPresent(id);
+			if (t != null) {
+				return CompletableFuture.completedFuture(t);
+			}
+		}
+		final byte[] key = keyTemplate.key(id);
+		return getBatcher().submit(new PipelineCommand<T>() {
+			@Override
+			protected void write(RedisConnection connection) {
+				connection.hGetAll(key);
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			protected T convert(Object reply) {
+				Map<byte[], byte[]> raw = (Map<byte[], byte[]>) reply;
+				if (raw == null || raw.isEmpty()) {
+					return null;
+				}
+				T t;
+				if (rawDecode) {
+					t = readRawEntity(id, raw);
+				} else {
+					RedisSerializer<String> serializer = stringRedisTemplate().getStringSerializer();
+					Map<Object, Object> entityMap = new HashMap<Object, Object>(raw.size() + 1);
+					for (Map.Entry<byte[], byte[]> entry : raw.entrySet()) {
+						entityMap.put(serializer.deserialize(entry.getKey()), serializer.deserialize(entry.getValue()));
+					}
+					entityMap.put("id", id);
+					t = readEntity(id, entityMap, true);
+				}
+				if (isLocalCache) {
+					initLocalCache().put(t, keyTemplate.keyString(id));
 				}
+				return t;
+			}
+		}).getFuture();
+	}
+
+	@Override
+	public CompletableFuture<Long> saveAsync(T t) {
+		return saveAsync(t, getIdAllocator().nextId());
+	}
+
+	@Override
+	public CompletableFuture<Long> saveAsync(T t, long id) {
+		Map<String, String> map = getBaseRedisMapper().toHash(t);
+		if (map.isEmpty()) {
+			return CompletableFuture.completedFuture(id);
+		}
+		HashScripts.SAVE_WITH_EXPIRE.load(stringRedisTemplate());
+		CompletableFuture<Long> result = new CompletableFuture<Long>();
+		submitSave(id, saveArgs(id, map, 0), result, true);
+		return result;
+	}
 
+	/**
+	 * HMSET成功时在pipeline中没有返回值，失败时有，会打乱同一批命令的结果，
+	 * 所以通过一定返回1的{@link HashScripts#SAVE_WITH_EXPIRE}写入，
+	 * redis重启后脚本丢失时重新加载后再提交一次
+	 * @param id
+	 * @param keysAndArgs
+	 * @param result
+	 * @param retry 
+	 */
+	private void submitSave(final long id, final byte[][] keysAndArgs, final CompletableFuture<Long> result,
+			final boolean retry) {
+		getBatcher().submit(new PipelineCommand<Long>() {
+			@Override
+			protected void write(RedisConnection connection) {
+				HashScripts.SAVE_WITH_EXPIRE.evalSha(connection, 1, keysAndArgs);
+			}
+
+			@Override
+			protected Long convert(Object reply) {
+				invalidateLocalCache(id);
 				return id;
 			}
+		}).getFuture().whenComplete(new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(Long value, Throwable e) {
+				if (e == null) {
+					result.complete(value);
+				} else if (retry && LuaScript.isNoScriptError(e)) {
+					try {
+						HashScripts.SAVE_WITH_EXPIRE.reload(stringRedisTemplate());
+						submitSave(id, keysAndArgs, result, false);
+					} catch (RuntimeException reloadError) {
+						result.completeExceptionally(reloadError);
+					}
+				} else {
+					result.completeExceptionally(e);
+				}
+			}
 		});
 	}
 
+	@Override
+	public CompletableFuture<Long> incrementAsync(String haskField, final long delta, final long id) {
+		final byte[] key = keyTemplate.key(id);
+		final byte[] field = stringRedisTemplate().getStringSerializer().serialize(haskField);
+		return getBatcher().submit(new PipelineCommand<Long>() {
+			@Override
+			protected void write(RedisConnection connection) {
+				connection.hIncrBy(key, field, delta);
+			}
+
+			@Override
+			protected Long convert(Object reply) {
+				invalidateLocalCache(id);
+				return (Long) reply;
+			}
+		}).getFuture();
+	}
+
+	private PipelineBatcher getBatcher() {
+		if (batcher == null) {
+			synchronized (lock) {
+				if (batcher == null) {
+					batcher = new PipelineBatcher(this);
+				}
+			}
+		}
+		return batcher;
+	}
+
 	/**
 	 * 持久化key值
 	 * 检查对应的key是否存在，如果存在设置该key永不过期
@@ -509,8 +1586,13 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	public boolean persistKey(int id) {
 		boolean flag = false;
 		if (exists(id)) {
-			String key = MessageFormat.format(baseKey, id + "");
-			flag = stringRedisTemplate().persist(key);
+			final byte[] key = keyTemplate.key(id);
+			flag = stringRedisTemplate().execute(new RedisCallback<Boolean>() {
+				@Override
+				public Boolean doInRedis(RedisConnection connection) throws DataAccessException {
+					return connection.persist(key);
+				}
+			});
 		}
 		return flag;
 	}
@@ -531,10 +1613,167 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 		this.cacheTime = cacheTime;
 	}
 
+	/**
+	 * 本地缓存写入后多久在后台刷新，
+	 * 刷新期间继续返回旧值，{@link #getCacheTime()}作为最长的过期时间
+	 * @return 小于等于0不刷新
+	 */
+	public int getCacheRefreshTime() {
+		return cacheRefreshTime;
+	}
+
+	public void setCacheRefreshTime(int cacheRefreshTime) {
+		this.cacheRefreshTime = cacheRefreshTime;
+	}
+
+	/**
+	 * id生成器，默认使用号段生成器
+	 * @return 
+	 */
+	public IdAllocator getIdAllocator() {
+		if (idAllocator == null) {
+			synchronized (lock) {
+				if (idAllocator == null) {
+					idAllocator = new BlockIdAllocator(this, createKeyName());
+				}
+			}
+		}
+		return idAllocator;
+	}
+
+	public void setIdAllocator(IdAllocator idAllocator) {
+		this.idAllocator = idAllocator;
+	}
+
+	public int getNullCacheSeconds() {
+		return nullCacheSeconds == 0 ? DEFAULT_NULL_CACHE_SECOND : nullCacheSeconds;
+	}
+
+	/**
+	 * 设置空值标记的过期时间，
+	 * loader查不到数据时在redis和本地缓存中记录空值，避免每次都穿透到数据库
+	 * @param nullCacheSeconds 小于0表示不缓存空值
+	 */
+	public void setNullCacheSeconds(int nullCacheSeconds) {
+		this.nullCacheSeconds = nullCacheSeconds;
+	}
+
+	public long getLoadTimeout() {
+		return loadTimeout <= 0 ? DEFAULT_LOAD_TIMEOUT : loadTimeout;
+	}
+
+	/**
+	 * 设置等待其它线程加载同一个id的最长时间，超时返回null
+	 * @param loadTimeout 毫秒
+	 */
+	public void setLoadTimeout(long loadTimeout) {
+		this.loadTimeout = loadTimeout;
+	}
+
+	public int getHotKeyThreshold() {
+		return hotKeyThreshold;
+	}
+
+	public void setHotKeyThreshold(int hotKeyThreshold) {
+		this.hotKeyThreshold = hotKeyThreshold;
+	}
+
+	public int getHotKeyCapacity() {
+		return hotKeyCapacity <= 0 ? DEFAULT_MAX_CAHCE_SIZE : hotKeyCapacity;
+	}
+
+	public void setHotKeyCapacity(int hotKeyCapacity) {
+		this.hotKeyCapacity = hotKeyCapacity;
+	}
+
+	public ExpirePolicy getExpirePolicy() {
+		return expirePolicy == null ? ExpirePolicy.NONE : expirePolicy;
+	}
+
+	/**
+	 * 设置过期时间策略，默认{@link ExpirePolicy#NONE}不调整，
+	 * 需要防止同时过期时设置，比如{@link ExpirePolicy#DEFAULT_JITTER}
+	 * @param expirePolicy 
+	 */
+	public void setExpirePolicy(ExpirePolicy expirePolicy) {
+		this.expirePolicy = expirePolicy;
+	}
+
+	public long getCounterFlushMillis() {
+		return counterFlushMillis <= 0 ? CounterBuffer.DEFAULT_FLUSH_MILLIS : counterFlushMillis;
+	}
+
+	public void setCounterFlushMillis(long counterFlushMillis) {
+		this.counterFlushMillis = counterFlushMillis;
+	}
+
+	public int getCounterMaxPending() {
+		return counterMaxPending <= 0 ? CounterBuffer.DEFAULT_MAX_PENDING : counterMaxPending;
+	}
+
+	public void setCounterMaxPending(int counterMaxPending) {
+		this.counterMaxPending = counterMaxPending;
+	}
+
+	public long getWriteBehindMillis() {
+		return writeBehindMillis;
+	}
+
+	public void setWriteBehindMillis(long writeBehindMillis) {
+		this.writeBehindMillis = writeBehindMillis;
+	}
+
+	public int getWriteBehindMaxBacklog() {
+		return writeBehindMaxBacklog <= 0 ? WriteBehindQueue.DEFAULT_MAX_BACKLOG : writeBehindMaxBacklog;
+	}
+
+	public void setWriteBehindMaxBacklog(int writeBehindMaxBacklog) {
+		this.writeBehindMaxBacklog = writeBehindMaxBacklog;
+	}
+
+	public boolean isReadRepair() {
+		return readRepair;
+	}
+
+	/**
+	 * 开启读修复，读取到旧数据时把迁移后的属性写回redis，
+	 * 完整读取过的hash标记版本号，之后读取时跳过检查
+	 * @param readRepair 
+	 */
+	public void setReadRepair(boolean readRepair) {
+		this.readRepair = readRepair;
+	}
+
+	public boolean isRawDecode() {
+		return rawDecode;
+	}
+
+	/**
+	 * 开启后HGETALL的结果直接从字节转换成实体，
+	 * 数字不创建中间的String，需要迁移的旧数据仍然按照字符串处理
+	 * @param rawDecode 
+	 */
+	public void setRawDecode(boolean rawDecode) {
+		this.rawDecode = rawDecode;
+	}
+
+	public int getPipelineSize() {
+		return pipelineSize <= 0 ? DEFAULT_PIPELINE_SIZE : pipelineSize;
+	}
+
+	public void setPipelineSize(int pipelineSize) {
+		this.pipelineSize = pipelineSize;
+	}
+
 	private void buildKey() {
 		String keyName = createKeyName();
-		this.baseKey = new StringBuffer().append(keyName).append(":{0}").toString();
+		String baseKey = new StringBuffer().append(keyName).append(":{0}").toString();
+		String nullKey = new StringBuffer().append(keyName).append(NULL_SUFFIX).append(":{0}").toString();
+		this.keyTemplate = new KeyTemplate(keyName);
+		this.nullKeyTemplate = new KeyTemplate(keyName + NULL_SUFFIX);
+		this.invalidationChannel = new StringBuffer().append(keyName).append(INVALIDATION_SUFFIX).toString();
 		RegistryService.registry(baseKey);
+		RegistryService.registry(nullKey);
 	}
 
 	/**
@@ -546,8 +1785,8 @@ public abstract class BaseHashRedisDaoImpl<T> implements IBaseHashRedisDao<T>, I
 	 */
 	class EntityLocalCache extends AbstractLocalCache<T> {
 
-		public EntityLocalCache(int second) {
-			super(entityClazz.getSimpleName(), second);
+		public EntityLocalCache(int size, int second, int refreshSecond) {
+			super(entityClazz.getSimpleName(), size, second, refreshSecond);
 		}
 
 		@Override
@@ -1,25 +1,19 @@
 package cn.friday.base.service.global.redis.dao.impl;
 
-import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
-
-
-
 import org.springframework.data.redis.core.BoundListOperations;
 
-import com.google.common.base.Joiner;
-
 import cn.friday.base.service.global.redis.dao.IBaseListRedisDao;
 import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
 import cn.friday.base.service.global.redis.registry.RegistryService;
+import cn.friday.base.service.global.redis.support.key.KeyTemplate;
 
 public abstract class BaseListRedisDaoImpl implements IBaseListRedisDao,IRedisOpsTemplate {
 	
-	private String baseKey;
+	private KeyTemplate keyTemplate;
 	
 	public BaseListRedisDaoImpl(String baseKey){
-		this.baseKey = baseKey+":{0}";
+		//没有id时保持原来末尾带分隔符的key
+		this.keyTemplate = new KeyTemplate(baseKey, baseKey + ":");
 		RegistryService.registry(baseKey);
 	}
 	
@@ -56,14 +50,7 @@ public abstract class BaseListRedisDaoImpl implements IBaseListRedisDao,IRedisOp
 	}
 	
 	private String buildKey(int ... ids){
-		StringBuilder builder = new StringBuilder();
-		List<Integer> list = new ArrayList<Integer>();
-		for(int i = 0;i < ids.length;i++ ){
-			list.add(ids[i]);
-		}
-		
-	     Joiner.on(":").appendTo(builder, list);
-	     return MessageFormat.format(baseKey, builder.toString());
+		return keyTemplate.keyString(ids);
 	}
 
 }
@@ -1,26 +1,38 @@
 package cn.friday.base.service.global.redis.dao.impl;
 
-import java.text.MessageFormat;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DefaultTuple;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
 import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import cn.friday.base.service.global.redis.bo.SimpleTypeTuple;
+import cn.friday.base.service.global.redis.bo.ZsetPage;
 import cn.friday.base.service.global.redis.bo.ZsetResult;
 import cn.friday.base.service.global.redis.dao.IBaseZsetRedisDao;
 import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
 import cn.friday.base.service.global.redis.loader.LoaderResult;
 import cn.friday.base.service.global.redis.loader.RedisLoader;
 import cn.friday.base.service.global.redis.registry.RegistryService;
+import cn.friday.base.service.global.redis.support.expire.ExpirePolicy;
+import cn.friday.base.service.global.redis.support.key.KeyTemplate;
+import cn.friday.base.service.global.redis.support.script.ZsetScripts;
+import cn.friday.base.service.global.redis.util.AsciiCodec;
+import cn.friday.base.service.global.redis.util.MemberEncoding;
 import cn.friday.base.service.global.redis.util.MemberUtil;
 import cn.friday.base.service.global.redis.util.MethodHelper;
 
@@ -29,17 +41,47 @@ import cn.friday.base.service.global.redis.util.MethodHelper;
  */
 public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, IRedisOpsTemplate {
 
-	private String baseKey;
+	private KeyTemplate keyTemplate;
 
 	private MemberUtil<T> memberUtil;
 
+	//过期时间策略，默认随机抖动防止同时过期
+	private ExpirePolicy expirePolicy;
+
+	//查询结果直接从redis返回的字节解析，不经过字符串
+	private boolean rawDecode;
+
+	private final static String ZRANGE = "ZRANGE";
+
+	private final static String ZREVRANGE = "ZREVRANGE";
+
+	private final static String ZRANGEBYSCORE = "ZRANGEBYSCORE";
+
+	private final static String ZREVRANGEBYSCORE = "ZREVRANGEBYSCORE";
+
+	private final static byte[] WITHSCORES = AsciiCodec.toBytes("WITHSCORES");
+
+	private final static byte[] LIMIT = AsciiCodec.toBytes("LIMIT");
+
 	//对象锁
 	private Object lock = new Object();
 
 	public BaseZsetRedisDaoImpl(String baseKey, Class<T> entityClass) {
-		this.baseKey = baseKey + ":{0}";
+		this(baseKey, entityClass, MemberEncoding.TEXT);
+	}
+
+	/**
+	 * 指定成员的保存格式，
+	 * {@link MemberEncoding#COMPACT}时写入紧凑格式并删除同一成员原来的文本格式，
+	 * 查询直接解析redis返回的字节，两种格式都可以读取
+	 * @param baseKey
+	 * @param entityClass
+	 * @param encoding
+	 */
+	public BaseZsetRedisDaoImpl(String baseKey, Class<T> entityClass, MemberEncoding encoding) {
+		this.keyTemplate = new KeyTemplate(baseKey);
 		RegistryService.registry(baseKey);
-		memberUtil = new MemberUtil<T>(entityClass);
+		memberUtil = new MemberUtil<T>(entityClass, encoding);
 	}
 
 	/**
@@ -51,12 +93,16 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public boolean add(T member, double score, int... ids) {
+		if (memberUtil.isCompact()) {
+			return addCompact(keyTemplate.key(ids),
+					Collections.singletonList(new SimpleTypeTuple<T>(member, score))) > 0;
+		}
 		String key = buildKey(ids);
 		return stringRedisTemplate().opsForZSet().add(key, memberUtil.getMember(member), score);
 	}
 
 	/**
-	 * 增加多个成员
+	 * 增加多个成员，成员按照传入的字符串原样写入
 	 * @param tuples
 	 * @param ids
 	 * @return
@@ -75,6 +121,9 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public boolean add(Collection<SimpleTypeTuple<T>> simpleTypeTuples, int... ids) {
+		if (memberUtil.isCompact()) {
+			return addCompact(keyTemplate.key(ids), simpleTypeTuples) > 0;
+		}
 		Set<TypedTuple<String>> tuples = new HashSet<TypedTuple<String>>();
 		TypedTuple<String> member;
 		for (SimpleTypeTuple<T> simple : simpleTypeTuples) {
@@ -93,6 +142,9 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public double incrScore(T member, double delta, int... ids) {
+		if (memberUtil.isCompact()) {
+			return incrScoreCompact(keyTemplate.key(ids), member, delta);
+		}
 		String key = buildKey(ids);
 		return stringRedisTemplate().opsForZSet().incrementScore(key, memberUtil.getMember(member), delta);
 	}
@@ -106,6 +158,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public Set<T> findByScoreAsc(double min, double max, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawMembers(rawRange(ZRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(min),
+					AsciiCodec.formatDouble(max)));
+		}
 		String key = buildKey(ids);
 		Set<String> members = stringRedisTemplate().opsForZSet().rangeByScore(key, min, max);
 		return memberUtil.getSet(members);
@@ -143,6 +199,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public Set<T> findByScoreDesc(double min, double max, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawMembers(rawRange(ZREVRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(max),
+					AsciiCodec.formatDouble(min)));
+		}
 		String key = buildKey(ids);
 		Set<String> members = stringRedisTemplate().opsForZSet().reverseRangeByScore(key, min, max);
 		return memberUtil.getSet(members);
@@ -178,6 +238,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public Set<T> findByScoreAsc(double min, double max, long offset, long count, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawMembers(rawRange(ZRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(min),
+					AsciiCodec.formatDouble(max), LIMIT, AsciiCodec.formatLong(offset), AsciiCodec.formatLong(count)));
+		}
 		String key = buildKey(ids);
 		Set<String> members = stringRedisTemplate().opsForZSet().rangeByScore(key, min, max, offset, count);
 		return memberUtil.getSet(members);
@@ -214,6 +278,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public Set<T> findByScoreDesc(double min, double max, long offset, long count, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawMembers(rawRange(ZREVRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(max),
+					AsciiCodec.formatDouble(min), LIMIT, AsciiCodec.formatLong(offset), AsciiCodec.formatLong(count)));
+		}
 		String key = buildKey(ids);
 		Set<String> members = stringRedisTemplate().opsForZSet().reverseRangeByScore(key, min, max, offset, count);
 		return memberUtil.getSet(members);
@@ -255,6 +323,9 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public Set<T> findByIdAsc(long start, long end, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawMembers(rawRange(ZRANGE, keyTemplate.key(ids), AsciiCodec.formatLong(start), AsciiCodec.formatLong(end)));
+		}
 		String key = buildKey(ids);
 		Set<String> members = stringRedisTemplate().opsForZSet().range(key, start, end);
 		return memberUtil.getSet(members);
@@ -289,6 +360,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public Set<T> findByIdDesc(long start, long end, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawMembers(
+					rawRange(ZREVRANGE, keyTemplate.key(ids), AsciiCodec.formatLong(start), AsciiCodec.formatLong(end)));
+		}
 		String key = buildKey(ids);
 		Set<String> members = stringRedisTemplate().opsForZSet().reverseRange(key, start, end);
 		return memberUtil.getSet(members);
@@ -326,6 +401,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public List<ZsetResult<T>> findByIdWithScoresAsc(long start, long end, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawTuples(rawRange(ZRANGE, keyTemplate.key(ids), AsciiCodec.formatLong(start), AsciiCodec.formatLong(end),
+					WITHSCORES));
+		}
 		String key = buildKey(ids);
 		Set<TypedTuple<String>> results = stringRedisTemplate().boundZSetOps(key).rangeWithScores(start, end);
 		return resolveSelectResult(results);
@@ -359,6 +438,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public List<ZsetResult<T>> findByScoreWithScoresAsc(double min, double max, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawTuples(rawRange(ZRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(min),
+					AsciiCodec.formatDouble(max), WITHSCORES));
+		}
 		String key = buildKey(ids);
 		Set<TypedTuple<String>> results = stringRedisTemplate().opsForZSet().rangeByScoreWithScores(key, min, max);
 		return resolveSelectResult(results);
@@ -387,6 +470,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public List<ZsetResult<T>> findByScoreWithScoresDesc(double min, double max, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawTuples(rawRange(ZREVRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(max),
+					AsciiCodec.formatDouble(min), WITHSCORES));
+		}
 		String key = buildKey(ids);
 		Set<TypedTuple<String>> results = stringRedisTemplate().opsForZSet().reverseRangeByScoreWithScores(key, min,
 				max);
@@ -423,6 +510,11 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public List<ZsetResult<T>> findByScoreWithScoresAsc(double min, double max, long offset, long count, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawTuples(rawRange(ZRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(min),
+					AsciiCodec.formatDouble(max), WITHSCORES, LIMIT, AsciiCodec.formatLong(offset),
+					AsciiCodec.formatLong(count)));
+		}
 		String key = buildKey(ids);
 		Set<TypedTuple<String>> results = stringRedisTemplate().opsForZSet().rangeByScoreWithScores(key, min, max,
 				offset, count);
@@ -461,6 +553,11 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public List<ZsetResult<T>> findByScoreWithScoresDesc(double min, double max, long offset, long count, int... ids) {
+		if (rawDecode || memberUtil.isCompact()) {
+			return rawTuples(rawRange(ZREVRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(max),
+					AsciiCodec.formatDouble(min), WITHSCORES, LIMIT, AsciiCodec.formatLong(offset),
+					AsciiCodec.formatLong(count)));
+		}
 		String key = buildKey(ids);
 		Set<TypedTuple<String>> results = stringRedisTemplate().opsForZSet().reverseRangeByScoreWithScores(key, min,
 				max, offset, count);
@@ -492,6 +589,63 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 		return result;
 	}
 
+	/**
+	 * 按照id查询，结果升序返回，
+	 * 成员和分值直接从redis的回复填充到数组
+	 */
+	@Override
+	public ZsetPage<T> findByIdWithScoresAscPage(long start, long end, int... ids) {
+		List<Object> reply = rawRange(ZRANGE, keyTemplate.key(ids), AsciiCodec.formatLong(start),
+				AsciiCodec.formatLong(end), WITHSCORES);
+		return rawPage(reply, end + 1, start >= 0 && end >= 0 ? end - start + 1 : 0);
+	}
+
+	/**
+	 * 按照分值的升序排序，
+	 * 成员和分值直接从redis的回复填充到数组
+	 */
+	@Override
+	public ZsetPage<T> findByScoreWithScoresAscPage(double min, double max, int... ids) {
+		List<Object> reply = rawRange(ZRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(min),
+				AsciiCodec.formatDouble(max), WITHSCORES);
+		return rawPage(reply, ZsetPage.NO_NEXT, 0);
+	}
+
+	/**
+	 * 按照分值的倒序排序，
+	 * 成员和分值直接从redis的回复填充到数组
+	 */
+	@Override
+	public ZsetPage<T> findByScoreWithScoresDescPage(double min, double max, int... ids) {
+		List<Object> reply = rawRange(ZREVRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(max),
+				AsciiCodec.formatDouble(min), WITHSCORES);
+		return rawPage(reply, ZsetPage.NO_NEXT, 0);
+	}
+
+	/**
+	 * 根据分值查询（升序），
+	 * 成员和分值直接从redis的回复填充到数组
+	 */
+	@Override
+	public ZsetPage<T> findByScoreWithScoresAscPage(double min, double max, long offset, long count, int... ids) {
+		List<Object> reply = rawRange(ZRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(min),
+				AsciiCodec.formatDouble(max), WITHSCORES, LIMIT, AsciiCodec.formatLong(offset),
+				AsciiCodec.formatLong(count));
+		return rawPage(reply, offset + count, count);
+	}
+
+	/**
+	 * 根据分值查询（降序），
+	 * 成员和分值直接从redis的回复填充到数组
+	 */
+	@Override
+	public ZsetPage<T> findByScoreWithScoresDescPage(double min, double max, long offset, long count, int... ids) {
+		List<Object> reply = rawRange(ZREVRANGEBYSCORE, keyTemplate.key(ids), AsciiCodec.formatDouble(max),
+				AsciiCodec.formatDouble(min), WITHSCORES, LIMIT, AsciiCodec.formatLong(offset),
+				AsciiCodec.formatLong(count));
+		return rawPage(reply, offset + count, count);
+	}
+
 	/**
 	 * 查询成员对应的分值
 	 * 无法确实member是否存在，还是score为0
@@ -504,6 +658,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	@Override
 	@Deprecated
 	public double getScore(T member, int... ids) {
+		if (memberUtil.isCompact()) {
+			Double score = scoreCompact(keyTemplate.key(ids), member);
+			return score == null ? 0.0 : score;
+		}
 		String key = buildKey(ids);
 		Double score = stringRedisTemplate().opsForZSet().score(key, memberUtil.getMember(member));
 		if (score == null) {
@@ -520,6 +678,10 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public double score(T member, int... ids) {
+		if (memberUtil.isCompact()) {
+			Double score = scoreCompact(keyTemplate.key(ids), member);
+			return score == null ? NO_MEMBER : score;
+		}
 		String key = buildKey(ids);
 		Double score = stringRedisTemplate().opsForZSet().score(key, memberUtil.getMember(member));
 		if (score == null) {
@@ -582,6 +744,9 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public boolean remove(T member, int... ids) {
+		if (memberUtil.isCompact()) {
+			return removeCompact(keyTemplate.key(ids), member) > 0;
+		}
 		String key = buildKey(ids);
 		return stringRedisTemplate().opsForZSet().remove(key, memberUtil.getMember(member)) > 0 ? true : false;
 	}
@@ -631,8 +796,7 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	 */
 	@Override
 	public void expire(final long seconds, int... ids) {
-		final String key = buildKey(ids);
-		MethodHelper.expire(stringRedisTemplate(), key, seconds);
+		MethodHelper.expire(stringRedisTemplate(), keyTemplate.key(ids), getExpirePolicy().apply(seconds));
 	}
 
 	/**
@@ -708,19 +872,11 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 	}
 
 	private String buildKey(int... ids) {
-		if (ids.length == 0) {
-			return baseKey.replace(":{0}", "");
-		} else {
-			StringBuilder builder = new StringBuilder();
-			List<Integer> list = new ArrayList<Integer>();
-			for (int i = 0; i < ids.length; i++) {
-				list.add(ids[i]);
-			}
-
-			Joiner.on(":").appendTo(builder, list);
-			return MessageFormat.format(baseKey, builder.toString());
-		}
+		return keyTemplate.keyString(ids);
+	}
 
+	protected byte[] rawKey(int... ids) {
+		return keyTemplate.key(ids);
 	}
 
 	private Set<T> reloadWithOutScore(RedisLoader<List<ZsetResult<T>>> loader, int... ids) {
@@ -760,4 +916,175 @@ public abstract class BaseZsetRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, I
 		return zsetResults;
 	}
 
+	/**
+	 * 写入紧凑格式的成员，同一个pipeline中删除这些成员原来的文本格式
+	 * @param key
+	 * @param simpleTypeTuples
+	 * @return 新增的成员数量
+	 */
+	private long addCompact(final byte[] key, Collection<SimpleTypeTuple<T>> simpleTypeTuples) {
+		final Set<Tuple> tuples = new LinkedHashSet<Tuple>();
+		final byte[][] textMembers = new byte[simpleTypeTuples.size()][];
+		int i = 0;
+		for (SimpleTypeTuple<T> simple : simpleTypeTuples) {
+			tuples.add(new DefaultTuple(memberUtil.getMemberBytes(simple.getValue()), simple.getScore()));
+			textMembers[i++] = memberUtil.getTextMemberBytes(simple.getValue());
+		}
+		if (tuples.isEmpty()) {
+			return 0;
+		}
+		List<Object> results = stringRedisTemplate().executePipelined(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.zAdd(key, tuples);
+				connection.zRem(key, textMembers);
+				return null;
+			}
+		});
+		Long added = (Long) results.get(0);
+		return added == null ? 0 : added;
+	}
+
+	/**
+	 * 紧凑格式增加分值，成员还是文本格式时把原来的分值合并过来，
+	 * 迁移和累加在一个lua脚本中执行，并发时不会重复累加
+	 * @param key
+	 * @param member
+	 * @param delta
+	 * @return
+	 */
+	private double incrScoreCompact(byte[] key, T member, double delta) {
+		byte[] score = ZsetScripts.INCR_SCORE_MIGRATE.execute(stringRedisTemplate(), 1, key,
+				AsciiCodec.formatDouble(delta), memberUtil.getMemberBytes(member), memberUtil.getTextMemberBytes(member));
+		return AsciiCodec.parseDouble(score);
+	}
+
+	/**
+	 * 紧凑格式的分值，找不到时再查询还没有迁移的文本格式
+	 * @param key
+	 * @param member
+	 * @return 成员不存在时返回null
+	 */
+	private Double scoreCompact(final byte[] key, T member) {
+		final byte[] compact = memberUtil.getMemberBytes(member);
+		final byte[] text = memberUtil.getTextMemberBytes(member);
+		return stringRedisTemplate().execute(new RedisCallback<Double>() {
+			@Override
+			public Double doInRedis(RedisConnection connection) throws DataAccessException {
+				Double score = connection.zScore(key, compact);
+				if (score == null) {
+					score = connection.zScore(key, text);
+				}
+				return score;
+			}
+		});
+	}
+
+	/**
+	 * 同时删除成员的紧凑格式和文本格式
+	 * @param key
+	 * @param member
+	 * @return
+	 */
+	private long removeCompact(final byte[] key, T member) {
+		final byte[] compact = memberUtil.getMemberBytes(member);
+		final byte[] text = memberUtil.getTextMemberBytes(member);
+		Long removed = stringRedisTemplate().execute(new RedisCallback<Long>() {
+			@Override
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zRem(key, compact, text);
+			}
+		});
+		return removed == null ? 0 : removed;
+	}
+
+	/**
+	 * 直接在连接上执行查询命令，返回redis的原始回复
+	 * @param command
+	 * @param args
+	 * @return
+	 */
+	protected List<Object> rawRange(final String command, final byte[]... args) {
+		return stringRedisTemplate().execute(new RedisCallback<List<Object>>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public List<Object> doInRedis(RedisConnection connection) throws DataAccessException {
+				return (List<Object>) connection.execute(command, args);
+			}
+		});
+	}
+
+	private Set<T> rawMembers(List<Object> reply) {
+		Set<T> set = new LinkedHashSet<T>();
+		if (reply != null) {
+			for (Object member : reply) {
+				set.add(memberUtil.getObject((byte[]) member));
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * 解析WITHSCORES的回复，成员和分值交替出现
+	 * @param reply
+	 * @return
+	 */
+	private List<ZsetResult<T>> rawTuples(List<Object> reply) {
+		if (reply == null || reply.isEmpty()) {
+			return null;
+		}
+		List<ZsetResult<T>> zsetResults = new ArrayList<ZsetResult<T>>(reply.size() / 2);
+		for (int i = 0; i + 1 < reply.size(); i += 2) {
+			zsetResults.add(new ZsetResult<T>(memberUtil.getObject((byte[]) reply.get(i)),
+					AsciiCodec.parseDouble((byte[]) reply.get(i + 1))));
+		}
+		return zsetResults;
+	}
+
+	/**
+	 * 解析WITHSCORES的回复到数组，
+	 * 返回的数量达到请求的数量时才有下一页
+	 * @param reply
+	 * @param next 下一页的开始位置
+	 * @param count 请求的数量，小于等于0表示没有下一页
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private ZsetPage<T> rawPage(List<Object> reply, long next, long count) {
+		int size = reply == null ? 0 : reply.size() / 2;
+		T[] values = (T[]) Array.newInstance(memberUtil.getEntityClass(), size);
+		double[] scores = new double[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = memberUtil.getObject((byte[]) reply.get(i * 2));
+			scores[i] = AsciiCodec.parseDouble((byte[]) reply.get(i * 2 + 1));
+		}
+		return new ZsetPage<T>(values, scores, count > 0 && size >= count ? next : ZsetPage.NO_NEXT);
+	}
+
+	public boolean isRawDecode() {
+		return rawDecode;
+	}
+
+	/**
+	 * 开启后查询直接解析redis返回的字节，分值和Long、Integer成员不创建中间的String，
+	 * 紧凑格式的dao总是直接解析字节
+	 * @param rawDecode 
+	 */
+	public void setRawDecode(boolean rawDecode) {
+		this.rawDecode = rawDecode;
+	}
+
+	public ExpirePolicy getExpirePolicy() {
+		return expirePolicy == null ? ExpirePolicy.NONE : expirePolicy;
+	}
+
+	/**
+	 * 设置过期时间策略，默认{@link ExpirePolicy#NONE}不调整，
+	 * 需要防止同时过期时设置，比如{@link ExpirePolicy#DEFAULT_JITTER}
+	 * @param expirePolicy 
+	 */
+	public void setExpirePolicy(ExpirePolicy expirePolicy) {
+		this.expirePolicy = expirePolicy;
+	}
+
 }
@@ -1,6 +1,6 @@
 package cn.friday.base.service.global.redis.dao.impl;
 
-import java.text.MessageFormat;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
@@ -9,18 +9,22 @@ import java.util.Set;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 
 import cn.friday.base.service.global.redis.bo.SimpleTypeTuple;
+import cn.friday.base.service.global.redis.bo.ZsetPage;
 import cn.friday.base.service.global.redis.bo.ZsetResult;
 import cn.friday.base.service.global.redis.dao.IBaseZsetRedisDao;
 import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
 import cn.friday.base.service.global.redis.loader.RedisLoader;
 import cn.friday.base.service.global.redis.registry.RegistryService;
+import cn.friday.base.service.global.redis.support.expire.ExpirePolicy;
+import cn.friday.base.service.global.redis.support.key.KeyTemplate;
+import cn.friday.base.service.global.redis.util.MemberEncoding;
 import cn.friday.base.service.global.redis.util.MemberUtil;
 
 public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDao<T>, IRedisOpsTemplate {
@@ -33,7 +37,7 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	/**
 	 * 每个分片对应的key
 	 */
-	private String[] key;
+	private KeyTemplate[] key;
 	/**
 	 * 第一个分片元素大小
 	 */
@@ -41,12 +45,28 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 
 	private MemberUtil<T> memberUtil;
 
+	//过期时间策略，默认随机抖动防止同时过期
+	private ExpirePolicy expirePolicy;
+
 	public BaseZsetSegmentRedisDaoImpl(String baseKey, int segmentSize, Class<T> entityClass) {
+		this(baseKey, segmentSize, entityClass, MemberEncoding.TEXT);
+	}
+
+	/**
+	 * 指定成员的保存格式，
+	 * {@link MemberEncoding#COMPACT}时写入紧凑格式并删除同一成员原来的文本格式，读取时两种格式都支持
+	 * @param baseKey
+	 * @param segmentSize
+	 * @param entityClass
+	 * @param encoding
+	 */
+	public BaseZsetSegmentRedisDaoImpl(String baseKey, int segmentSize, Class<T> entityClass,
+			MemberEncoding encoding) {
 		this.SEGMENT_SIZE = segmentSize;
 		this.baseKey = baseKey;
 
 		buildSegmentBaseKey();
-		memberUtil = new MemberUtil<T>(entityClass);
+		memberUtil = new MemberUtil<T>(entityClass, encoding);
 	}
 
 	@Override
@@ -54,7 +74,7 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 		//获取元素所处的分片
 		int segmentIndex = getElenmentInSegment(member, ids);
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
+			byte[] segmentKey = segmentKey(i, ids);
 			//获取第一分片的大小
 			long segmentSize = getSegmentElementSize(segmentKey);
 			int maxSegmentSize = getSegmentSize(i);
@@ -63,18 +83,17 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 				//将元素添加到里面
 				if (segmentIndex == -1) {
 					//加入到当前分片，将包含最后一个分片的数据都向后移动
-					stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
+					addMember(segmentKey, member, score);
 				} else if (segmentIndex == i) {
-					stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
+					addMember(segmentKey, member, score);
 				} else if (segmentIndex < i) {
-					stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
+					addMember(segmentKey, member, score);
 					//在大的分值处移走对应的member
 					remove(member, ids);
 				} else if (segmentIndex > i) {
 					//加入到当前分片，将包含最后一个分片的数据都向后移动
-					stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
-					stringRedisTemplate().opsForZSet().remove(buildKey(segmentIndex, ids),
-							memberUtil.getMember(member));
+					addMember(segmentKey, member, score);
+					zRem(segmentKey(segmentIndex, ids), memberForms(member));
 					afterMoveSegment(i, maxSegmentSize, segmentKey, ids);
 				}
 
@@ -85,19 +104,18 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 				if (zsetResult.getScore() < score) {
 					if (segmentIndex == -1) {
 						//加入到当前分片，将包含最后一个分片的数据都向后移动
-						stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
+						addMember(segmentKey, member, score);
 						afterMoveSegment(i, maxSegmentSize, segmentKey, ids);
 					} else if (segmentIndex == i) {
-						stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
+						addMember(segmentKey, member, score);
 					} else if (segmentIndex < i) {
-						stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
+						addMember(segmentKey, member, score);
 						//在大的分值处移走对应的member
 						remove(member, ids);
 					} else if (segmentIndex > i) {
 						//加入到当前分片，将包含最后一个分片的数据都向后移动
-						stringRedisTemplate().opsForZSet().add(segmentKey, memberUtil.getMember(member), score);
-						stringRedisTemplate().opsForZSet().remove(buildKey(segmentIndex, ids),
-								memberUtil.getMember(member));
+						addMember(segmentKey, member, score);
+						zRem(segmentKey(segmentIndex, ids), memberForms(member));
 						afterMoveSegment(i, maxSegmentSize, segmentKey, ids);
 					}
 					break;
@@ -139,8 +157,8 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	private int getElenmentInSegment(T member, int... ids) {
 		int segmentIndex = -1;//当前元素没有分片
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
-			if (score(segmentKey, memberUtil.getMember(member)) > 0) {
+			byte[] segmentKey = segmentKey(i, ids);
+			if (score(segmentKey, member) > 0) {
 				segmentIndex = i;
 				break;
 			}
@@ -158,21 +176,20 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 
 	@Override
 	public Set<T> findByScoreDesc(double min, double max, int... ids) {
-		Set<String> result = new LinkedHashSet<String>();
+		Set<T> result = new LinkedHashSet<T>();
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
+			byte[] segmentKey = segmentKey(i, ids);
 			long segmentElementSize = getSegmentElementSize(segmentKey);
 			ZsetResult<T> zsetResult = getSegmentLastElement(segmentKey, (int) segmentElementSize);
 			if (zsetResult.getScore() == 0) {
 				break;
 			}
-			Set<String> set = stringRedisTemplate().opsForZSet().reverseRangeByScore(segmentKey, min, max);
-			result.addAll(set);
+			addMembers(result, zRevRangeByScore(segmentKey, min, max, 0, -1));
 			if (min >= zsetResult.getScore()) {
 				break;
 			}
 		}
-		return memberUtil.getSet(result);
+		return result;
 	}
 
 	@Override
@@ -183,22 +200,20 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 
 	@Override
 	public Set<T> findByScoreDesc(double min, double max, long offset, long count, int... ids) {
-		Set<String> result = new LinkedHashSet<String>();
+		Set<T> result = new LinkedHashSet<T>();
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
+			byte[] segmentKey = segmentKey(i, ids);
 			long segmentElementSize = getSegmentElementSize(segmentKey);
 			ZsetResult<T> zsetResult = getSegmentLastElement(segmentKey, (int) segmentElementSize);
 			if (zsetResult.getScore() == 0) {
 				break;
 			}
-			Set<String> set = stringRedisTemplate().opsForZSet().reverseRangeByScore(segmentKey, min, max, offset,
-					count);
-			result.addAll(set);
+			addMembers(result, zRevRangeByScore(segmentKey, min, max, offset, count));
 			if (min >= zsetResult.getScore()) {
 				break;
 			}
 		}
-		return memberUtil.getSet(result);
+		return result;
 	}
 
 	@Override
@@ -230,34 +245,33 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 
 	@Override
 	public Set<T> findByIdDesc(long start, long end, int... ids) {
-		Set<String> result = new LinkedHashSet<String>();
+		Set<T> result = new LinkedHashSet<T>();
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
+			byte[] segmentKey = segmentKey(i, ids);
 			long segmentElementSize = getSegmentElementSize(segmentKey);
 			long segmentSize = getSegmentSize(i - 1);
 			if (segmentElementSize == 0) {
 				break;
 			}
-			Set<String> set = stringRedisTemplate().opsForZSet().range(segmentKey, start - segmentSize, end);
+			Set<byte[]> set = zRange(segmentKey, start - segmentSize, end);
 			if (set != null && set.size() > 0) {
-				result.addAll(set);
+				addMembers(result, set);
 			}
 			if (segmentElementSize > end) {
 				break;
 			}
 
 		}
-		return memberUtil.getSet(result);
+		return result;
 	}
 
 	@Override
 	public List<ZsetResult<T>> findByScoreWithScoresAsc(double min, double max, int... ids) {
 		List<ZsetResult<T>> zsetResults = new ArrayList<ZsetResult<T>>();
 		for (int i = SEGMENT_SIZE - 1; i >= 0; i--) {
-			String segmentKey = buildKey(i, ids);
-			Set<TypedTuple<String>> results = stringRedisTemplate().opsForZSet().rangeByScoreWithScores(segmentKey, min,
-					max);
-			for (TypedTuple<String> tt : results) {
+			byte[] segmentKey = segmentKey(i, ids);
+			Set<Tuple> results = zRangeByScoreWithScores(segmentKey, min, max);
+			for (Tuple tt : results) {
 				if (tt.getScore() > max) {
 					break;
 				}
@@ -289,8 +303,8 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	public double getScore(T member, int... ids) {
 		double score = 0.0;
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
-			score = score(segmentKey, memberUtil.getMember(member));
+			byte[] segmentKey = segmentKey(i, ids);
+			score = score(segmentKey, member);
 			if (score > 0) {
 				break;
 			}
@@ -311,8 +325,8 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	public boolean existMember(T member, int... ids) {
 		boolean flag = false;
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
-			if (score(segmentKey, memberUtil.getMember(member)) > 0) {
+			byte[] segmentKey = segmentKey(i, ids);
+			if (score(segmentKey, member) > 0) {
 				flag = true;
 				break;
 			}
@@ -324,7 +338,7 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	public long size(int... ids) {
 		long total = 0;
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
+			byte[] segmentKey = segmentKey(i, ids);
 			total += getSegmentElementSize(segmentKey);
 		}
 		return total;
@@ -334,7 +348,7 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	public long rangeSize(double min, double max, int... ids) {
 		long total = 0;
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
+			byte[] segmentKey = segmentKey(i, ids);
 			long segmentElementSize = getSegmentElementSize(segmentKey);
 			if (segmentElementSize == 0) {
 				break;
@@ -343,7 +357,7 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 			if (zsetResult.getScore() <= 0) {
 				break;
 			}
-			total += stringRedisTemplate().opsForZSet().count(segmentKey, min, max);
+			total += zCount(segmentKey, min, max);
 
 			if (min > zsetResult.getScore()) {
 				break;
@@ -356,11 +370,11 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	public boolean remove(T member, int... ids) {
 		//移除对应的元素
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			String segmentKey = buildKey(i, ids);
-			double score = score(segmentKey, memberUtil.getMember(member));
+			byte[] segmentKey = segmentKey(i, ids);
+			double score = score(segmentKey, member);
 			if (score > 0) {
 				//移除对应的元素，并将后面的元素向前移动
-				stringRedisTemplate().opsForZSet().remove(segmentKey, memberUtil.getMember(member));
+				zRem(segmentKey, memberForms(member));
 				//移动元素
 				long currSegmentSize = getSegmentElementSize(segmentKey);
 				if (getSegmentSize(i) - currSegmentSize > 0) {
@@ -389,17 +403,14 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	 * @param maxSegmentSize
 	 * @param segmentKey
 	 */
-	private void afterMoveSegment(int index, int maxSegmentSize, String segmentKey, int... ids) {
+	private void afterMoveSegment(int index, int maxSegmentSize, byte[] segmentKey, int... ids) {
 		if (index < SEGMENT_SIZE - 1) {
 			ZsetResult<T> zsetResult = getSegmentLastElement(segmentKey, maxSegmentSize);
-			List<ZsetResult<T>> surplusElements = findSurplusElementsWithScoresDesc(0, zsetResult.getScore() - 1,
-					segmentKey);
-			//将多余的元素加入到下一个分片中
-			String nextSegmentKey = buildKey(index + 1, ids);
-			for (ZsetResult<T> zr : surplusElements) {
-				stringRedisTemplate().opsForZSet().add(nextSegmentKey, memberUtil.getMember(zr.getValue()),
-						zr.getScore());
-				stringRedisTemplate().opsForZSet().remove(segmentKey, memberUtil.getMember(zr.getValue()));
+			Set<Tuple> surplusElements = findSurplusElementsWithScoresDesc(0, zsetResult.getScore() - 1, segmentKey);
+			//将多余的元素加入到下一个分片中，成员保持原来的格式
+			byte[] nextSegmentKey = segmentKey(index + 1, ids);
+			for (Tuple tuple : surplusElements) {
+				moveMember(segmentKey, nextSegmentKey, tuple.getValue(), tuple.getScore());
 			}
 			long nextSegmentElementSize = getSegmentElementSize(nextSegmentKey);
 			long nextSegmentSize = getSegmentSize(index + 1);
@@ -410,8 +421,29 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 		}
 	}
 
-	private double score(String segmentKey, String member) {
-		Double score = stringRedisTemplate().opsForZSet().score(segmentKey, member);
+	/**
+	 * 查询成员的分值，紧凑格式时还会查询没有迁移的文本格式
+	 * @param segmentKey
+	 * @param member
+	 * @return
+	 */
+	private double score(byte[] segmentKey, T member) {
+		for (byte[] value : memberForms(member)) {
+			double score = score(segmentKey, value);
+			if (score != 0) {
+				return score;
+			}
+		}
+		return 0;
+	}
+
+	private double score(final byte[] segmentKey, final byte[] member) {
+		Double score = stringRedisTemplate().execute(new RedisCallback<Double>() {
+			@Override
+			public Double doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zScore(segmentKey, member);
+			}
+		});
 		if (score == null) {
 			return 0;
 		}
@@ -425,23 +457,20 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	 * @param segmentKey
 	 * @param ids
 	 */
-	private void forwardMoveSegment(int index, int moveElementNum, String segmentKey, int... ids) {
+	private void forwardMoveSegment(int index, int moveElementNum, byte[] segmentKey, int... ids) {
 
 		Preconditions.checkArgument(moveElementNum > 0, "moveElementNum need > 0");
 		if (index < SEGMENT_SIZE - 1) {
-			String nextSegmentKey = buildKey(index + 1, ids);
-			long nextSegmentSize = stringRedisTemplate().opsForZSet().size(nextSegmentKey);
+			byte[] nextSegmentKey = segmentKey(index + 1, ids);
+			long nextSegmentSize = getSegmentElementSize(nextSegmentKey);
 			if (nextSegmentSize > 0) {
 				//需要移动数据
-				Set<String> members = stringRedisTemplate().opsForZSet().reverseRange(nextSegmentKey, 0,
-						moveElementNum - 1);
+				Set<byte[]> members = zRevRange(nextSegmentKey, 0, moveElementNum - 1);
 				Preconditions.checkNotNull(members, "没可向前一个分片移动的数据");
-				String currSegmentKey = buildKey(index, ids);
-				for (String member : members) {
-					Double score = score(nextSegmentKey, member);
-					stringRedisTemplate().opsForZSet().add(currSegmentKey, member, score);
-					//移除
-					stringRedisTemplate().opsForZSet().remove(nextSegmentKey, member);
+				byte[] currSegmentKey = segmentKey(index, ids);
+				for (byte[] member : members) {
+					double score = score(nextSegmentKey, member);
+					moveMember(nextSegmentKey, currSegmentKey, member, score);
 				}
 				//递归调用移动下一个
 				forwardMoveSegment(index + 1, moveElementNum, nextSegmentKey, ids);
@@ -456,15 +485,13 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	 * @param segmentKey
 	 * @return
 	 */
-	private List<ZsetResult<T>> findSurplusElementsWithScoresDesc(double min, double max, String segmentKey) {
-		List<ZsetResult<T>> zsetResults = new ArrayList<ZsetResult<T>>();
-		Set<TypedTuple<String>> results = stringRedisTemplate().opsForZSet().reverseRangeByScoreWithScores(segmentKey,
-				min, max);
-		for (TypedTuple<String> tt : results) {
-			zsetResults.add(new ZsetResult<T>(memberUtil.getObject(tt.getValue()), tt.getScore()));
-		}
-		results = null;
-		return zsetResults;
+	private Set<Tuple> findSurplusElementsWithScoresDesc(final double min, final double max, final byte[] segmentKey) {
+		return stringRedisTemplate().execute(new RedisCallback<Set<Tuple>>() {
+			@Override
+			public Set<Tuple> doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zRevRangeByScoreWithScores(segmentKey, min, max);
+			}
+		});
 	}
 
 	/**
@@ -473,13 +500,12 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	 * @param maxSegmentSize
 	 * @return
 	 */
-	private ZsetResult<T> getSegmentLastElement(String segmentKey, int maxSegmentSize) {
-		Set<String> set = stringRedisTemplate().opsForZSet().reverseRange(segmentKey, maxSegmentSize - 1,
-				maxSegmentSize - 1);
+	private ZsetResult<T> getSegmentLastElement(byte[] segmentKey, int maxSegmentSize) {
+		Set<byte[]> set = zRevRange(segmentKey, maxSegmentSize - 1, maxSegmentSize - 1);
 		Preconditions.checkNotNull(set, "找不到最后一个分片数据");
-		String member = "";
-		for (String str : set) {
-			member = str;
+		byte[] member = new byte[0];
+		for (byte[] value : set) {
+			member = value;
 		}
 		double score = score(segmentKey, member);
 		ZsetResult<T> zsetResult = new ZsetResult<T>(memberUtil.getObject(member), score);
@@ -491,8 +517,135 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	 * @param segmentKey
 	 * @return
 	 */
-	private long getSegmentElementSize(String segmentKey) {
-		return stringRedisTemplate().opsForZSet().size(segmentKey);
+	private long getSegmentElementSize(final byte[] segmentKey) {
+		Long size = stringRedisTemplate().execute(new RedisCallback<Long>() {
+			@Override
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zCard(segmentKey);
+			}
+		});
+		return size == null ? 0 : size;
+	}
+
+	/**
+	 * 成员在redis中可能的格式，紧凑格式时第二个是还没有迁移的文本格式
+	 * @param member
+	 * @return
+	 */
+	private byte[][] memberForms(T member) {
+		if (memberUtil.isCompact()) {
+			return new byte[][] { memberUtil.getMemberBytes(member), memberUtil.getTextMemberBytes(member) };
+		}
+		return new byte[][] { memberUtil.getMemberBytes(member) };
+	}
+
+	/**
+	 * 写入成员，紧凑格式时同时删除同一成员的文本格式
+	 * @param segmentKey
+	 * @param member
+	 * @param score
+	 */
+	private void addMember(final byte[] segmentKey, T member, final double score) {
+		final byte[][] forms = memberForms(member);
+		stringRedisTemplate().executePipelined(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.zAdd(segmentKey, score, forms[0]);
+				if (forms.length > 1) {
+					connection.zRem(segmentKey, forms[1]);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 把成员从一个分片移动到另一个分片
+	 * @param from
+	 * @param to
+	 * @param member
+	 * @param score
+	 */
+	private void moveMember(final byte[] from, final byte[] to, final byte[] member, final double score) {
+		stringRedisTemplate().executePipelined(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				connection.zAdd(to, score, member);
+				connection.zRem(from, member);
+				return null;
+			}
+		});
+	}
+
+	private long zRem(final byte[] segmentKey, final byte[]... members) {
+		Long removed = stringRedisTemplate().execute(new RedisCallback<Long>() {
+			@Override
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zRem(segmentKey, members);
+			}
+		});
+		return removed == null ? 0 : removed;
+	}
+
+	private long zCount(final byte[] segmentKey, final double min, final double max) {
+		Long count = stringRedisTemplate().execute(new RedisCallback<Long>() {
+			@Override
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zCount(segmentKey, min, max);
+			}
+		});
+		return count == null ? 0 : count;
+	}
+
+	private Set<byte[]> zRange(final byte[] segmentKey, final long start, final long end) {
+		return stringRedisTemplate().execute(new RedisCallback<Set<byte[]>>() {
+			@Override
+			public Set<byte[]> doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zRange(segmentKey, start, end);
+			}
+		});
+	}
+
+	private Set<byte[]> zRevRange(final byte[] segmentKey, final long start, final long end) {
+		return stringRedisTemplate().execute(new RedisCallback<Set<byte[]>>() {
+			@Override
+			public Set<byte[]> doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zRevRange(segmentKey, start, end);
+			}
+		});
+	}
+
+	/**
+	 * 按照分值倒序查询，count为-1时不限制数量
+	 */
+	private Set<byte[]> zRevRangeByScore(final byte[] segmentKey, final double min, final double max,
+			final long offset, final long count) {
+		return stringRedisTemplate().execute(new RedisCallback<Set<byte[]>>() {
+			@Override
+			public Set<byte[]> doInRedis(RedisConnection connection) throws DataAccessException {
+				if (count < 0) {
+					return connection.zRevRangeByScore(segmentKey, min, max);
+				}
+				return connection.zRevRangeByScore(segmentKey, min, max, offset, count);
+			}
+		});
+	}
+
+	private Set<Tuple> zRangeByScoreWithScores(final byte[] segmentKey, final double min, final double max) {
+		return stringRedisTemplate().execute(new RedisCallback<Set<Tuple>>() {
+			@Override
+			public Set<Tuple> doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.zRangeByScoreWithScores(segmentKey, min, max);
+			}
+		});
+	}
+
+	private void addMembers(Set<T> result, Set<byte[]> members) {
+		if (members != null) {
+			for (byte[] member : members) {
+				result.add(memberUtil.getObject(member));
+			}
+		}
 	}
 
 	/**
@@ -515,13 +668,15 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	 * @param ids
 	 */
 	@Override
-	public void expire(final long seconds, int... ids) {
+	public void expire(long seconds, int... ids) {
+		//所有分片使用同一个过期时间
+		final long expireSeconds = getExpirePolicy().apply(seconds);
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			final String segmentKey = buildKey(i, ids);
+			final byte[] segmentKey = key[i].key(ids);
 			stringRedisTemplate().execute(new RedisCallback<Boolean>() {
 				@Override
 				public Boolean doInRedis(RedisConnection connection) throws DataAccessException {
-					return connection.expire(segmentKey.getBytes(), seconds);
+					return connection.expire(segmentKey, expireSeconds);
 				}
 			});
 		}
@@ -615,16 +770,62 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 		return null;
 	}
 
+	@Override
+	public ZsetPage<T> findByIdWithScoresAscPage(long start, long end, int... ids) {
+		return toPage(findByIdWithScoresAsc(start, end, ids), end + 1,
+				start >= 0 && end >= 0 ? end - start + 1 : 0);
+	}
+
+	@Override
+	public ZsetPage<T> findByScoreWithScoresAscPage(double min, double max, int... ids) {
+		return toPage(findByScoreWithScoresAsc(min, max, ids), ZsetPage.NO_NEXT, 0);
+	}
+
+	@Override
+	public ZsetPage<T> findByScoreWithScoresDescPage(double min, double max, int... ids) {
+		return toPage(findByScoreWithScoresDesc(min, max, ids), ZsetPage.NO_NEXT, 0);
+	}
+
+	@Override
+	public ZsetPage<T> findByScoreWithScoresAscPage(double min, double max, long offset, long count, int... ids) {
+		return toPage(findByScoreWithScoresAsc(min, max, offset, count, ids), offset + count, count);
+	}
+
+	@Override
+	public ZsetPage<T> findByScoreWithScoresDescPage(double min, double max, long offset, long count, int... ids) {
+		return toPage(findByScoreWithScoresDesc(min, max, offset, count, ids), offset + count, count);
+	}
+
+	/**
+	 * 分片的结果来自多个key，从列表转换成数组
+	 * @param zsetResults
+	 * @param next
+	 * @param count
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private ZsetPage<T> toPage(List<ZsetResult<T>> zsetResults, long next, long count) {
+		int size = zsetResults == null ? 0 : zsetResults.size();
+		T[] values = (T[]) Array.newInstance(memberUtil.getEntityClass(), size);
+		double[] scores = new double[size];
+		for (int i = 0; i < size; i++) {
+			ZsetResult<T> zsetResult = zsetResults.get(i);
+			values[i] = zsetResult.getValue();
+			scores[i] = zsetResult.getScore();
+		}
+		return new ZsetPage<T>(values, scores, count > 0 && size >= count ? next : ZsetPage.NO_NEXT);
+	}
+
 	/**
 	 * 构建分片的basekey
 	 */
 	private void buildSegmentBaseKey() {
-		key = new String[SEGMENT_SIZE];
+		key = new KeyTemplate[SEGMENT_SIZE];
 		for (int i = 0; i < SEGMENT_SIZE; i++) {
-			StringBuilder baseKeyBuilder = new StringBuilder(baseKey);
-			baseKeyBuilder.append(":").append(i).append(":").append("{0}");
-			key[i] = baseKeyBuilder.toString();
-			RegistryService.registry(baseKeyBuilder.toString());
+			String segmentName = new StringBuilder(baseKey).append(":").append(i).toString();
+			//没有id时保持原来末尾带分隔符的key
+			key[i] = new KeyTemplate(segmentName, segmentName + ":");
+			RegistryService.registry(segmentName + ":{0}");
 		}
 	}
 
@@ -635,14 +836,11 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 	 * @return
 	 */
 	private String buildKey(int index, int... ids) {
-		StringBuilder builder = new StringBuilder();
-		List<Integer> list = new ArrayList<Integer>();
-		for (int i = 0; i < ids.length; i++) {
-			list.add(ids[i]);
-		}
-		Joiner.on(":").appendTo(builder, list);
-		String segmentBaseKey = key[index];
-		return MessageFormat.format(segmentBaseKey, builder.toString());
+		return key[index].keyString(ids);
+	}
+
+	private byte[] segmentKey(int index, int... ids) {
+		return key[index].key(ids);
 	}
 
 	/**
@@ -665,4 +863,17 @@ public abstract class BaseZsetSegmentRedisDaoImpl<T> implements IBaseZsetRedisDa
 		return total * SEGMENT_INITIAL_SIZE;
 	}
 
+	public ExpirePolicy getExpirePolicy() {
+		return expirePolicy == null ? ExpirePolicy.NONE : expirePolicy;
+	}
+
+	/**
+	 * 设置过期时间策略，默认{@link ExpirePolicy#NONE}不调整，
+	 * 需要防止同时过期时设置，比如{@link ExpirePolicy#DEFAULT_JITTER}
+	 * @param expirePolicy 
+	 */
+	public void setExpirePolicy(ExpirePolicy expirePolicy) {
+		this.expirePolicy = expirePolicy;
+	}
+
 }
@@ -0,0 +1,211 @@
+package cn.friday.base.service.global.redis.dao.impl;
+
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+
+import com.google.common.base.Preconditions;
+
+import cn.friday.base.service.global.redis.bo.LongZsetPage;
+import cn.friday.base.service.global.redis.dao.ILongZsetRedisDao;
+import cn.friday.base.service.global.redis.util.AsciiCodec;
+
+/**
+ * 成员为Long的zset
+ * <p>
+ * 基本类型的接口直接在连接上执行命令，参数编码成ASCII字节，
+ * 回复中的成员和分值直接解析到数组，除了redis客户端返回的字节数组外不创建其它对象
+ * </p>
+ * @author BravoZu
+ *
+ */
+public abstract class LongZsetRedisDaoImpl extends BaseZsetRedisDaoImpl<Long> implements ILongZsetRedisDao {
+
+	private final static String ZADD = "ZADD";
+
+	private final static String ZREM = "ZREM";
+
+	private final static String ZSCORE = "ZSCORE";
+
+	private final static String ZRANGE = "ZRANGE";
+
+	private final static String ZREVRANGE = "ZREVRANGE";
+
+	private final static String ZRANGEBYSCORE = "ZRANGEBYSCORE";
+
+	private final static String ZREVRANGEBYSCORE = "ZREVRANGEBYSCORE";
+
+	private final static byte[] WITHSCORES = AsciiCodec.toBytes("WITHSCORES");
+
+	private final static byte[] LIMIT = AsciiCodec.toBytes("LIMIT");
+
+	private final static long[] EMPTY_MEMBERS = new long[0];
+
+	private final static double[] EMPTY_SCORES = new double[0];
+
+	public LongZsetRedisDaoImpl(String baseKey) {
+		super(baseKey, Long.class);
+	}
+
+	@Override
+	public boolean addMember(long member, double score, int... ids) {
+		return addMembers(new long[] { member }, new double[] { score }, ids) > 0;
+	}
+
+	@Override
+	public long addMembers(long[] members, double[] scores, int... ids) {
+		Preconditions.checkArgument(members.length == scores.length, "members和scores的长度不一致");
+		if (members.length == 0) {
+			return 0;
+		}
+		byte[][] args = new byte[members.length * 2 + 1][];
+		args[0] = rawKey(ids);
+		for (int i = 0; i < members.length; i++) {
+			args[i * 2 + 1] = AsciiCodec.formatDouble(scores[i]);
+			args[i * 2 + 2] = AsciiCodec.formatLong(members[i]);
+		}
+		return toLong(execute(ZADD, args));
+	}
+
+	@Override
+	public double scoreOf(long member, int... ids) {
+		byte[] score = (byte[]) execute(ZSCORE, rawKey(ids), AsciiCodec.formatLong(member));
+		if (score == null) {
+			return NO_MEMBER;
+		}
+		return AsciiCodec.parseDouble(score);
+	}
+
+	@Override
+	public boolean removeMember(long member, int... ids) {
+		return removeMembers(new long[] { member }, ids) > 0;
+	}
+
+	@Override
+	public long removeMembers(long[] members, int... ids) {
+		if (members.length == 0) {
+			return 0;
+		}
+		byte[][] args = new byte[members.length + 1][];
+		args[0] = rawKey(ids);
+		for (int i = 0; i < members.length; i++) {
+			args[i + 1] = AsciiCodec.formatLong(members[i]);
+		}
+		return toLong(execute(ZREM, args));
+	}
+
+	@Override
+	public long[] findMembersByIdAsc(long start, long end, int... ids) {
+		return parseMembers(rawRange(ZRANGE, rawKey(ids), AsciiCodec.formatLong(start), AsciiCodec.formatLong(end)));
+	}
+
+	@Override
+	public long[] findMembersByIdDesc(long start, long end, int... ids) {
+		return parseMembers(
+				rawRange(ZREVRANGE, rawKey(ids), AsciiCodec.formatLong(start), AsciiCodec.formatLong(end)));
+	}
+
+	@Override
+	public long[] findMembersByScoreAsc(double min, double max, long offset, long count, int... ids) {
+		return parseMembers(rawRange(ZRANGEBYSCORE, rawKey(ids), AsciiCodec.formatDouble(min),
+				AsciiCodec.formatDouble(max), LIMIT, AsciiCodec.formatLong(offset), AsciiCodec.formatLong(count)));
+	}
+
+	@Override
+	public long[] findMembersByScoreDesc(double min, double max, long offset, long count, int... ids) {
+		return parseMembers(rawRange(ZREVRANGEBYSCORE, rawKey(ids), AsciiCodec.formatDouble(max),
+				AsciiCodec.formatDouble(min), LIMIT, AsciiCodec.formatLong(offset), AsciiCodec.formatLong(count)));
+	}
+
+	@Override
+	public LongZsetPage findPageByIdAsc(long start, long end, int... ids) {
+		List<Object> reply = rawRange(ZRANGE, rawKey(ids), AsciiCodec.formatLong(start), AsciiCodec.formatLong(end),
+				WITHSCORES);
+		return parsePage(reply, end + 1, rangeCount(start, end));
+	}
+
+	@Override
+	public LongZsetPage findPageByIdDesc(long start, long end, int... ids) {
+		List<Object> reply = rawRange(ZREVRANGE, rawKey(ids), AsciiCodec.formatLong(start), AsciiCodec.formatLong(end),
+				WITHSCORES);
+		return parsePage(reply, end + 1, rangeCount(start, end));
+	}
+
+	@Override
+	public LongZsetPage findPageByScoreAsc(double min, double max, long offset, long count, int... ids) {
+		List<Object> reply = rawRange(ZRANGEBYSCORE, rawKey(ids), AsciiCodec.formatDouble(min),
+				AsciiCodec.formatDouble(max), WITHSCORES, LIMIT, AsciiCodec.formatLong(offset),
+				AsciiCodec.formatLong(count));
+		return parsePage(reply, offset + count, count);
+	}
+
+	@Override
+	public LongZsetPage findPageByScoreDesc(double min, double max, long offset, long count, int... ids) {
+		List<Object> reply = rawRange(ZREVRANGEBYSCORE, rawKey(ids), AsciiCodec.formatDouble(max),
+				AsciiCodec.formatDouble(min), WITHSCORES, LIMIT, AsciiCodec.formatLong(offset),
+				AsciiCodec.formatLong(count));
+		return parsePage(reply, offset + count, count);
+	}
+
+	private Object execute(final String command, final byte[]... args) {
+		return stringRedisTemplate().execute(new RedisCallback<Object>() {
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				return connection.execute(command, args);
+			}
+		});
+	}
+
+	private static long toLong(Object reply) {
+		return reply == null ? 0 : (Long) reply;
+	}
+
+	private static long[] parseMembers(List<Object> reply) {
+		if (reply == null || reply.isEmpty()) {
+			return EMPTY_MEMBERS;
+		}
+		long[] members = new long[reply.size()];
+		for (int i = 0; i < members.length; i++) {
+			members[i] = AsciiCodec.parseLong((byte[]) reply.get(i));
+		}
+		return members;
+	}
+
+	/**
+	 * 解析WITHSCORES的回复，成员和分值交替出现，
+	 * 返回的数量达到请求的数量时才有下一页
+	 * @param reply
+	 * @param next 下一页的开始位置
+	 * @param count 请求的数量，小于等于0表示不确定
+	 * @return
+	 */
+	private static LongZsetPage parsePage(List<Object> reply, long next, long count) {
+		if (reply == null || reply.isEmpty()) {
+			return new LongZsetPage(EMPTY_MEMBERS, EMPTY_SCORES, LongZsetPage.NO_NEXT);
+		}
+		int size = reply.size() / 2;
+		long[] members = new long[size];
+		double[] scores = new double[size];
+		for (int i = 0; i < size; i++) {
+			members[i] = AsciiCodec.parseLong((byte[]) reply.get(i * 2));
+			scores[i] = AsciiCodec.parseDouble((byte[]) reply.get(i * 2 + 1));
+		}
+		return new LongZsetPage(members, scores, count > 0 && size >= count ? next : LongZsetPage.NO_NEXT);
+	}
+
+	/**
+	 * 下标区间包含的数量，有负数下标时无法确定
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private static long rangeCount(long start, long end) {
+		if (start < 0 || end < 0) {
+			return 0;
+		}
+		return end - start + 1;
+	}
+
+}
@@ -1,21 +1,17 @@
 package cn.friday.base.service.global.redis.mapper;
 
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.ConvertUtils;
 import org.springframework.data.redis.hash.BeanUtilsHashMapper;
 
+import cn.friday.base.service.global.redis.mapper.migration.HashField;
+import cn.friday.base.service.global.redis.mapper.migration.HashMigration;
 import cn.friday.base.service.global.redis.util.BooleanRedisConvert;
+import cn.friday.base.service.global.redis.util.DateCodec;
 import cn.friday.base.service.global.redis.util.DateRedisConvert;
-import cn.friday.base.service.global.redis.util.DateUtil;
 
 public class BaseRedisMapper<T> extends BeanUtilsHashMapper<T> implements IBaseRedisMapper<T> {
 
@@ -25,40 +21,73 @@ public class BaseRedisMapper<T> extends BeanUtilsHashMapper<T> implements IBaseR
 		ConvertUtils.register(new BooleanRedisConvert(), Boolean.class);
 	}
 
+	private final BeanHashCodec<T> codec;
+
+	//旧数据的迁移规则
+	private volatile HashMigration migration;
+
+	//完整写入时是否写入版本号
+	private volatile boolean stampVersionOnWrite;
+
 	public BaseRedisMapper(Class<T> type) {
 		super(type);
+		this.codec = BeanHashCodec.forClass(type);
+		//按毫秒数保存的addTime不再当作旧数据
+		this.migration = codec.isEpochMillis("addTime") ? HashMigration.legacy() : HashMigration.legacy("addTime");
 	}
 
 	@Override
 	public T fromObjectHash(Map<Object, Object> hash) {
+		return fromObjectHash(hash, null);
+	}
+
+	@Override
+	public T fromObjectHash(Map<Object, Object> hash, List<HashField> repairs) {
 		if (hash.size() < 2) {
 			return null;
 		}
-		Map<String, String> map = new HashMap<String, String>();
-		for (Object key : hash.keySet()) {
-			String keyStr = key.toString();
-			String valueStr = hash.get(key).toString();
-			if (keyStr.startsWith("is") && (("true").equals(valueStr) || ("false").equals(valueStr))) {
-				keyStr = keyStr.substring(2);
-				keyStr = keyStr.substring(0, 1).toLowerCase() + keyStr.substring(1, keyStr.length());
+		HashMigration migration = this.migration;
+		//已经迁移过的数据跳过检查
+		boolean current = migration.isCurrent(hash.get(HashMigration.VERSION_FIELD));
+		T bean = codec.newInstance();
+		for (Map.Entry<Object, Object> entry : hash.entrySet()) {
+			if (entry.getValue() == null) {
+				continue;
 			}
-
-			//兼容以前的奇葩数据
-			if ("isAnonymous".equals(keyStr)) {
-				if ("1".contains(valueStr)) {
-					valueStr = "true";
-				} else if ("0".equals(valueStr)) {
-					valueStr = "false";
+			String keyStr = entry.getKey().toString();
+			String valueStr = entry.getValue().toString();
+			if (!current) {
+				HashField migrated = migration.migrate(keyStr, valueStr);
+				if (migrated != null) {
+					keyStr = migrated.getField();
+					valueStr = migrated.getValue();
+					if (repairs != null && migrated.isRewritten()) {
+						repairs.add(migrated);
+					}
 				}
 			}
+			codec.set(bean, keyStr, valueStr);
+		}
+		return bean;
+	}
 
-			//兼容喜欢数据中的旧数据，存了时间戳
-			if ("addTime".endsWith(keyStr) && checkTimestamp(valueStr)) {
-				valueStr = DateUtil.changeLongToString(Long.parseLong(valueStr));
-			}
-			map.put(keyStr, valueStr);
+	/**
+	 * 已经迁移过的数据直接从字节解析，否则按照字符串检查旧数据
+	 */
+	@Override
+	public T fromRawHash(Map<byte[], byte[]> raw, long id, List<HashField> repairs) {
+		if (raw == null || raw.isEmpty()) {
+			return null;
+		}
+		if (!migration.isCurrent(HashMigration.version(raw))) {
+			return IBaseRedisMapper.super.fromRawHash(raw, id, repairs);
 		}
-		return super.fromHash(map);
+		T bean = codec.newInstance();
+		for (Map.Entry<byte[], byte[]> entry : raw.entrySet()) {
+			codec.setRaw(bean, entry.getKey(), entry.getValue());
+		}
+		codec.set(bean, "id", Long.toString(id));
+		return bean;
 	}
 
 	@Override
@@ -68,57 +97,58 @@ public class BaseRedisMapper<T> extends BeanUtilsHashMapper<T> implements IBaseR
 			return null;
 		}
 
-		Map<String, String> map = new HashMap<String, String>();
-		for (String key : hash.keySet()) {
-			String value = hash.get(key);
+		T bean = codec.newInstance();
+		for (Map.Entry<String, String> entry : hash.entrySet()) {
+			String key = entry.getKey();
+			String value = entry.getValue();
 			if (key.startsWith("is") && (("true").equals(value) || ("false").equals(value))) {
 				key = key.substring(2);
 				key = key.substring(0, 1).toLowerCase() + key.substring(1, key.length());
 			}
-			map.put(key, value);
+			codec.set(bean, key, value);
 		}
-		return super.fromHash(map);
+		return bean;
 	}
 
+	/**
+	 * 打开{@link #setStampVersionOnWrite(boolean)}时写入当前的迁移版本号，
+	 * 新写入的数据读取时不再检查旧数据
+	 */
 	@Override
 	public Map<String, String> toHash(T object) {
-		Map<String, String> map = super.toHash(object);
-		Map<String, String> targetMap = new HashMap<String, String>();
-
-		BeanUtilsBean beanUtilsBean = BeanUtilsBean.getInstance();
-		PropertyDescriptor[] descriptors = beanUtilsBean.getPropertyUtils().getPropertyDescriptors(object);
-		for (PropertyDescriptor pd : descriptors) {
-			//返回值的类型
-			String value = map.get(pd.getName());
-			if (value != null) {
-				Method method = beanUtilsBean.getPropertyUtils().getReadMethod(pd);
-				String returnValueTypeName = method.getReturnType().getName();
-				if ("java.util.Date".equals(returnValueTypeName)) {
-					try {
-						Object o = method.invoke(object);
-						if (o instanceof Date) {
-							value = DateUtil.formateDate((Date) o);
-						}
-					} catch (IllegalAccessException e) {
-						e.printStackTrace();
-					} catch (IllegalArgumentException e) {
-						e.printStackTrace();
-					} catch (InvocationTargetException e) {
-						e.printStackTrace();
-					}
-				}
-				targetMap.put(pd.getName(), value);
-			}
+		Map<String, String> hash = codec.toHash(object);
+		HashMigration migration = this.migration;
+		if (stampVersionOnWrite && !hash.isEmpty() && !migration.isEmpty()) {
+			hash.put(HashMigration.VERSION_FIELD, migration.getVersionString());
 		}
+		return hash;
+	}
+
+	@Override
+	public HashMigration getMigration() {
+		return migration;
+	}
 
-		return targetMap;
+	/**
+	 * 修改迁移规则，{@link HashMigration#NONE}表示不检查旧数据
+	 * @param migration
+	 */
+	public void setMigration(HashMigration migration) {
+		this.migration = migration == null ? HashMigration.NONE : migration;
 	}
 
-	private static final String rexp = "[0-9]*";
+	public boolean isStampVersionOnWrite() {
+		return stampVersionOnWrite;
+	}
 
-	private static Pattern pattern() {
-		Pattern pat = Pattern.compile(rexp);
-		return pat;
+	/**
+	 * 完整写入实体时是否同时写入当前的迁移版本号，默认不写入，只由读取时的写回标记版本号。
+	 * 标记了版本号的hash读取时不再检查旧格式，所以只有所有节点都已经升级、
+	 * 不会再有旧格式的写入时才能打开，打开后新数据第一次读取时不需要写回
+	 * @param stampVersionOnWrite 
+	 */
+	public void setStampVersionOnWrite(boolean stampVersionOnWrite) {
+		this.stampVersionOnWrite = stampVersionOnWrite;
 	}
 
 	/**
@@ -127,11 +157,7 @@ public class BaseRedisMapper<T> extends BeanUtilsHashMapper<T> implements IBaseR
 	 * @return
 	 */
 	public boolean checkTimestamp(String str) {
-		Matcher mat = pattern().matcher(str);
-		if (mat.matches() && str.startsWith("14") && str.length() == 13) {
-			return true;
-		}
-		return false;
+		return DateCodec.isLegacyTimestamp(str);
 	}
 
 }
@@ -0,0 +1,497 @@
+package cn.friday.base.service.global.redis.mapper;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.beanutils.ConvertUtils;
+
+import cn.friday.base.service.global.redis.util.AsciiCodec;
+import cn.friday.base.service.global.redis.util.BooleanRedisConvert;
+import cn.friday.base.service.global.redis.util.DateCodec;
+
+/**
+ * 预编译的实体与hash之间的转换
+ * <p>
+ * 每个实体类只分析一次属性，为每个属性生成读写器和编解码器，
+ * 读写器优先通过LambdaMetafactory生成，失败时使用MethodHandle。
+ * 转换结果与原来基于commons-beanutils的实现保持一致：
+ * 包含class属性，日期按照yyyy-MM-dd HH:mm:ss格式(标注了{@link EpochMillis}的按照毫秒数)，
+ * 快速路径无法解析的值交给ConvertUtils处理，得到与原来相同的默认值
+ * </p>
+ * @author BravoZu
+ *
+ * @param <T>
+ */
+public class BeanHashCodec<T> {
+
+	private final static ConcurrentMap<Class<?>, BeanHashCodec<?>> codecs = new ConcurrentHashMap<Class<?>, BeanHashCodec<?>>();
+
+	private final static MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final static BooleanRedisConvert BOOLEAN_CONVERTER = new BooleanRedisConvert();
+
+	private final Class<T> type;
+
+	private final Supplier<Object> constructor;
+
+	private final PropertyCodec[] readers;
+
+	private final Map<String, PropertyCodec> writers;
+
+	//按照属性名的字节查找可写属性，开放寻址，长度为2的幂
+	private final PropertyCodec[] rawWriters;
+
+	@SuppressWarnings("unchecked")
+	public static <T> BeanHashCodec<T> forClass(Class<T> type) {
+		BeanHashCodec<T> codec = (BeanHashCodec<T>) codecs.get(type);
+		if (codec == null) {
+			codec = new BeanHashCodec<T>(type);
+			BeanHashCodec<T> exists = (BeanHashCodec<T>) codecs.putIfAbsent(type, codec);
+			if (exists != null) {
+				codec = exists;
+			}
+		}
+		return codec;
+	}
+
+	private BeanHashCodec(Class<T> type) {
+		this.type = type;
+		this.constructor = constructor(type);
+		PropertyDescriptor[] descriptors;
+		try {
+			descriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
+		} catch (IntrospectionException e) {
+			throw new IllegalArgumentException("introspect " + type.getName() + " failed", e);
+		}
+		List<PropertyCodec> readers = new ArrayList<PropertyCodec>();
+		Map<String, PropertyCodec> writers = new HashMap<String, PropertyCodec>();
+		for (PropertyDescriptor descriptor : descriptors) {
+			PropertyCodec codec = new PropertyCodec(descriptor, type);
+			if (codec.getter != null) {
+				readers.add(codec);
+			}
+			if (codec.setter != null) {
+				writers.put(codec.name, codec);
+			}
+		}
+		this.readers = readers.toArray(new PropertyCodec[readers.size()]);
+		this.writers = writers;
+		this.rawWriters = new PropertyCodec[Integer.highestOneBit(Math.max(writers.size(), 1) * 2) * 2];
+		for (PropertyCodec writer : writers.values()) {
+			int i = AsciiCodec.hashCode(writer.nameBytes) & (rawWriters.length - 1);
+			while (rawWriters[i] != null) {
+				i = (i + 1) & (rawWriters.length - 1);
+			}
+			rawWriters[i] = writer;
+		}
+	}
+
+	/**
+	 * 实体转换成hash，值为null的属性不保存
+	 * @param object
+	 * @return
+	 */
+	public Map<String, String> toHash(T object) {
+		Map<String, String> hash = new HashMap<String, String>(readers.length * 4 / 3 + 1);
+		for (PropertyCodec reader : readers) {
+			Object value = reader.getter.apply(object);
+			if (value != null) {
+				hash.put(reader.name, reader.encode(value));
+			}
+		}
+		return hash;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T newInstance() {
+		return (T) constructor.get();
+	}
+
+	/**
+	 * 设置属性，没有对应的可写属性时忽略
+	 * @param bean
+	 * @param property
+	 * @param value
+	 */
+	public void set(T bean, String property, String value) {
+		PropertyCodec writer = writers.get(property);
+		if (writer != null && value != null) {
+			writer.setter.accept(bean, writer.decode(value));
+		}
+	}
+
+	/**
+	 * 直接用redis返回的字节设置属性，数字和boolean不创建中间的String，
+	 * 没有对应的可写属性时忽略
+	 * @param bean
+	 * @param property
+	 * @param value
+	 */
+	public void setRaw(T bean, byte[] property, byte[] value) {
+		if (value == null) {
+			return;
+		}
+		int i = AsciiCodec.hashCode(property) & (rawWriters.length - 1);
+		PropertyCodec writer;
+		while ((writer = rawWriters[i]) != null) {
+			if (Arrays.equals(writer.nameBytes, property)) {
+				writer.setter.accept(bean, writer.decodeRaw(value));
+				return;
+			}
+			i = (i + 1) & (rawWriters.length - 1);
+		}
+	}
+
+	/**
+	 * 日期属性是否按照毫秒数保存
+	 * @param property
+	 * @return
+	 */
+	public boolean isEpochMillis(String property) {
+		PropertyCodec writer = writers.get(property);
+		return writer != null && writer.kind == Kind.EPOCH_MILLIS;
+	}
+
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * 属性的类型
+	 */
+	private enum Kind {
+		STRING, INT, LONG, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN, BOOLEAN_OBJECT, DATE, EPOCH_MILLIS, CLASS, OTHER
+	}
+
+	/**
+	 * 单个属性的读写和编解码
+	 */
+	private static class PropertyCodec {
+
+		private final String name;
+
+		private final byte[] nameBytes;
+
+		private final Class<?> propertyType;
+
+		private final Kind kind;
+
+		//实体类的class属性的值
+		private final Class<?> beanType;
+
+		private final String className;
+
+		private Function<Object, Object> getter;
+
+		private BiConsumer<Object, Object> setter;
+
+		PropertyCodec(PropertyDescriptor descriptor, Class<?> beanType) {
+			this.beanType = beanType;
+			this.className = beanType.toString();
+			this.name = descriptor.getName();
+			this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			this.propertyType = descriptor.getPropertyType();
+			Method read = descriptor.getReadMethod();
+			this.kind = epochMillis(read, beanType, name, propertyType) ? Kind.EPOCH_MILLIS : kind(name, propertyType);
+			if (read != null && !Modifier.isStatic(read.getModifiers())) {
+				this.getter = getter(read);
+			}
+			Method write = descriptor.getWriteMethod();
+			if (write != null && !Modifier.isStatic(write.getModifiers())) {
+				this.setter = setter(write);
+			}
+		}
+
+		String encode(Object value) {
+			switch (kind) {
+			case STRING:
+				return (String) value;
+			case DATE:
+				return value instanceof Date ? DateCodec.format((Date) value) : value.toString();
+			case EPOCH_MILLIS:
+				return DateCodec.formatMillis((Date) value);
+			case CLASS:
+				return value == beanType ? className : value.toString();
+			case OTHER:
+				return ConvertUtils.convert(value);
+			default:
+				return value.toString();
+			}
+		}
+
+		Object decode(String value) {
+			try {
+				switch (kind) {
+				case STRING:
+					return value;
+				case INT:
+					return Integer.valueOf(value);
+				case LONG:
+					return Long.valueOf(value);
+				case SHORT:
+					return Short.valueOf(value);
+				case BYTE:
+					return Byte.valueOf(value);
+				case DOUBLE:
+					return Double.valueOf(value);
+				case FLOAT:
+					return Float.valueOf(value);
+				case BOOLEAN:
+					if ("true".equals(value)) {
+						return Boolean.TRUE;
+					} else if ("false".equals(value)) {
+						return Boolean.FALSE;
+					}
+					break;
+				case BOOLEAN_OBJECT:
+					return BOOLEAN_CONVERTER.convert(Boolean.class, value);
+				case DATE:
+					return DateCodec.parse(value);
+				case EPOCH_MILLIS:
+					return DateCodec.parseAny(value);
+				default:
+					break;
+				}
+			} catch (NumberFormatException e) {
+				//交给ConvertUtils得到原来的默认值
+			}
+			return ConvertUtils.convert(value, propertyType);
+		}
+
+		/**
+		 * 从字节解析，快速路径无法处理时按照字符串解析，结果和{@link #decode(String)}一致
+		 * @param value
+		 * @return
+		 */
+		Object decodeRaw(byte[] value) {
+			try {
+				switch (kind) {
+				case STRING:
+					return AsciiCodec.toString(value);
+				case INT:
+					return AsciiCodec.parseInt(value);
+				case LONG:
+					return AsciiCodec.parseLong(value);
+				case DOUBLE:
+					double d = AsciiCodec.parseDouble(value);
+					//redis格式的inf按照原来的方式处理
+					if (!Double.isInfinite(d)) {
+						return d;
+					}
+					break;
+				case BOOLEAN:
+					if (AsciiCodec.equals(value, "true")) {
+						return Boolean.TRUE;
+					} else if (AsciiCodec.equals(value, "false")) {
+						return Boolean.FALSE;
+					}
+					break;
+				default:
+					break;
+				}
+			} catch (NumberFormatException e) {
+				//交给字符串的解析得到原来的默认值
+			}
+			return decode(AsciiCodec.toString(value));
+		}
+
+	}
+
+	private static Kind kind(String name, Class<?> type) {
+		if (type == String.class) {
+			return Kind.STRING;
+		} else if (type == int.class || type == Integer.class) {
+			return Kind.INT;
+		} else if (type == long.class || type == Long.class) {
+			return Kind.LONG;
+		} else if (type == short.class || type == Short.class) {
+			return Kind.SHORT;
+		} else if (type == byte.class || type == Byte.class) {
+			return Kind.BYTE;
+		} else if (type == double.class || type == Double.class) {
+			return Kind.DOUBLE;
+		} else if (type == float.class || type == Float.class) {
+			return Kind.FLOAT;
+		} else if (type == boolean.class) {
+			return Kind.BOOLEAN;
+		} else if (type == Boolean.class) {
+			return Kind.BOOLEAN_OBJECT;
+		} else if (type == Date.class) {
+			return Kind.DATE;
+		} else if ("class".equals(name) && type == Class.class) {
+			return Kind.CLASS;
+		}
+		return Kind.OTHER;
+	}
+
+	/**
+	 * 日期属性的getter或者同名字段上是否标注了EpochMillis
+	 * @param read
+	 * @param beanType
+	 * @param name
+	 * @param type
+	 * @return
+	 */
+	private static boolean epochMillis(Method read, Class<?> beanType, String name, Class<?> type) {
+		if (type != Date.class) {
+			return false;
+		}
+		if (read != null && read.isAnnotationPresent(EpochMillis.class)) {
+			return true;
+		}
+		for (Class<?> clazz = beanType; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				return field.isAnnotationPresent(EpochMillis.class);
+			} catch (NoSuchFieldException e) {
+				//继续查找父类
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Supplier<Object> constructor(Class<?> type) {
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			MethodHandle handle;
+			try {
+				checkVisible(type);
+				handle = LOOKUP.unreflectConstructor(constructor);
+				CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+						MethodType.methodType(Object.class), handle, MethodType.methodType(type));
+				return (Supplier<Object>) site.getTarget().invoke();
+			} catch (Throwable e) {
+				constructor.setAccessible(true);
+				final MethodHandle fallback = LOOKUP.unreflectConstructor(constructor);
+				return new Supplier<Object>() {
+					@Override
+					public Object get() {
+						try {
+							return fallback.invoke();
+						} catch (Throwable t) {
+							throw new IllegalStateException(t);
+						}
+					}
+				};
+			}
+		} catch (Exception e) {
+			//没有无参构造器时延迟到使用时报错
+			final String message = "no default constructor: " + type.getName();
+			return new Supplier<Object>() {
+				@Override
+				public Object get() {
+					throw new IllegalStateException(message);
+				}
+			};
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> getter(Method method) {
+		try {
+			Class<?> returnType = wrap(method.getReturnType());
+			checkVisible(method.getDeclaringClass(), returnType);
+			MethodHandle handle = LOOKUP.unreflect(method);
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+					MethodType.methodType(Object.class, Object.class), handle,
+					MethodType.methodType(returnType, method.getDeclaringClass()));
+			return (Function<Object, Object>) site.getTarget().invoke();
+		} catch (Throwable e) {
+			final MethodHandle handle = accessible(method).asType(MethodType.methodType(Object.class, Object.class));
+			return new Function<Object, Object>() {
+				@Override
+				public Object apply(Object bean) {
+					try {
+						return handle.invokeExact(bean);
+					} catch (Throwable t) {
+						throw new IllegalStateException(t);
+					}
+				}
+			};
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> setter(Method method) {
+		try {
+			Class<?> parameterType = wrap(method.getParameterTypes()[0]);
+			checkVisible(method.getDeclaringClass(), parameterType);
+			MethodHandle handle = LOOKUP.unreflect(method);
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+					MethodType.methodType(void.class, Object.class, Object.class), handle,
+					MethodType.methodType(void.class, method.getDeclaringClass(), parameterType));
+			return (BiConsumer<Object, Object>) site.getTarget().invoke();
+		} catch (Throwable e) {
+			final MethodHandle handle = accessible(method)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			return new BiConsumer<Object, Object>() {
+				@Override
+				public void accept(Object bean, Object value) {
+					try {
+						handle.invokeExact(bean, value);
+					} catch (Throwable t) {
+						throw new IllegalStateException(t);
+					}
+				}
+			};
+		}
+	}
+
+	/**
+	 * 生成的lambda由当前类的类加载器加载，
+	 * 实体由其它类加载器加载时(比如热部署)使用MethodHandle
+	 * @param types
+	 * @throws ClassNotFoundException 
+	 */
+	private static void checkVisible(Class<?>... types) throws ClassNotFoundException {
+		ClassLoader loader = BeanHashCodec.class.getClassLoader();
+		for (Class<?> type : types) {
+			if (type.isPrimitive() || type.getClassLoader() == null || type.getClassLoader() == loader) {
+				continue;
+			}
+			if (Class.forName(type.getName(), false, loader) != type) {
+				throw new ClassNotFoundException(type.getName());
+			}
+		}
+	}
+
+	private static MethodHandle accessible(Method method) {
+		try {
+			method.setAccessible(true);
+			return LOOKUP.unreflect(method);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("can not access " + method, e);
+		}
+	}
+
+	private static Class<?> wrap(Class<?> type) {
+		if (!type.isPrimitive()) {
+			return type;
+		}
+		return MethodType.methodType(type).wrap().returnType();
+	}
+
+}
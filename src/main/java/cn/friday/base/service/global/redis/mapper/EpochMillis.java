@@ -0,0 +1,23 @@
+package cn.friday.base.service.global.redis.mapper;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 日期属性按照毫秒数保存到hash，解析比yyyy-MM-dd HH:mm:ss快，
+ * 读取时仍然兼容yyyy-MM-dd HH:mm:ss格式的旧数据
+ * <p>
+ * 可以标注在属性或者getter上
+ * </p>
+ * @author BravoZu
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface EpochMillis {
+
+}
@@ -1,7 +1,13 @@
 package cn.friday.base.service.global.redis.mapper;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import cn.friday.base.service.global.redis.mapper.migration.HashField;
+import cn.friday.base.service.global.redis.mapper.migration.HashMigration;
+import cn.friday.base.service.global.redis.util.AsciiCodec;
+
 public interface IBaseRedisMapper<T> {
 	
 	public T fromObjectHash(Map<Object, Object> hash);
@@ -10,4 +16,42 @@ public interface IBaseRedisMapper<T> {
 	
 	public Map<String, String> toHash(T object);
 
+	/**
+	 * 转换的同时收集被迁移规则改写过的属性，用于写回redis
+	 * @param hash
+	 * @param repairs 被改写的属性，可以为null
+	 * @return
+	 */
+	public default T fromObjectHash(Map<Object, Object> hash, List<HashField> repairs) {
+		return fromObjectHash(hash);
+	}
+
+	/**
+	 * 直接转换redis返回的hash，默认转换成字符串之后调用{@link #fromObjectHash(Map, List)}
+	 * @param raw HGETALL返回的hash
+	 * @param id
+	 * @param repairs 被改写的属性，可以为null
+	 * @return
+	 */
+	public default T fromRawHash(Map<byte[], byte[]> raw, long id, List<HashField> repairs) {
+		if (raw == null || raw.isEmpty()) {
+			return null;
+		}
+		Map<Object, Object> hash = new HashMap<Object, Object>(raw.size() * 4 / 3 + 2);
+		for (Map.Entry<byte[], byte[]> entry : raw.entrySet()) {
+			hash.put(AsciiCodec.toString(entry.getKey()),
+					entry.getValue() == null ? null : AsciiCodec.toString(entry.getValue()));
+		}
+		hash.put("id", id);
+		return fromObjectHash(hash, repairs);
+	}
+
+	/**
+	 * 旧数据的迁移规则
+	 * @return
+	 */
+	public default HashMigration getMigration() {
+		return HashMigration.NONE;
+	}
+
 }
@@ -0,0 +1,21 @@
+package cn.friday.base.service.global.redis.mapper.migration;
+
+/**
+ * 旧数据的boolean属性保存成了isXxx=true/false，改写成xxx
+ * @author BravoZu
+ *
+ */
+public class BooleanPrefixRule implements HashMigrationRule {
+
+	@Override
+	public boolean detect(String field, String value) {
+		return field.length() > 2 && field.startsWith("is") && ("true".equals(value) || "false".equals(value));
+	}
+
+	@Override
+	public void rewrite(HashField field) {
+		String name = field.getField().substring(2);
+		field.setField(name.substring(0, 1).toLowerCase() + name.substring(1));
+	}
+
+}
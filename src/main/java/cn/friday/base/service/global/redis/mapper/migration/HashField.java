@@ -0,0 +1,63 @@
+package cn.friday.base.service.global.redis.mapper.migration;
+
+/**
+ * hash中的一个属性，迁移规则在上面改写属性名和值
+ * @author BravoZu
+ *
+ */
+public class HashField {
+
+	//redis中原来的属性名和值
+	private final String originalField;
+
+	private final String originalValue;
+
+	private String field;
+
+	private String value;
+
+	public HashField(String field, String value) {
+		this.originalField = field;
+		this.originalValue = value;
+		this.field = field;
+		this.value = value;
+	}
+
+	/**
+	 * 是否被迁移规则改写过
+	 * @return
+	 */
+	public boolean isRewritten() {
+		return !originalField.equals(field) || !originalValue.equals(value);
+	}
+
+	public String getOriginalField() {
+		return originalField;
+	}
+
+	public String getOriginalValue() {
+		return originalValue;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public void setField(String field) {
+		this.field = field;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+	@Override
+	public String toString() {
+		return "HashField [" + originalField + "=" + originalValue + " -> " + field + "=" + value + "]";
+	}
+
+}
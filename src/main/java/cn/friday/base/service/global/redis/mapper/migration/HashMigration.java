@@ -0,0 +1,134 @@
+package cn.friday.base.service.global.redis.mapper.migration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import cn.friday.base.service.global.redis.util.AsciiCodec;
+
+/**
+ * 一个实体的迁移规则链
+ * <p>
+ * hash中的{@link #VERSION_FIELD}记录了数据已经迁移到的版本，
+ * 版本不低于{@link #getVersion()}的hash读取时跳过所有检查。
+ * 修改规则之后需要提高版本号，已经标记的旧版本数据会重新检查
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class HashMigration {
+
+	/**
+	 * hash中保存版本号的属性，名称尽量短
+	 */
+	public final static String VERSION_FIELD = "_sv";
+
+	/**
+	 * 没有任何规则，所有数据都不检查
+	 */
+	public final static HashMigration NONE = new HashMigration(0);
+
+	private final int version;
+
+	private final String versionString;
+
+	private final HashMigrationRule[] rules;
+
+	public HashMigration(int version, HashMigrationRule... rules) {
+		this.version = version;
+		this.versionString = String.valueOf(version);
+		this.rules = rules.clone();
+	}
+
+	/**
+	 * 原来BaseRedisMapper里兼容的旧数据
+	 * @param timestampFields 保存了毫秒数的日期属性
+	 * @return
+	 */
+	public static HashMigration legacy(String... timestampFields) {
+		List<HashMigrationRule> rules = new ArrayList<HashMigrationRule>();
+		rules.add(new BooleanPrefixRule());
+		rules.add(new NumericBooleanRule("isAnonymous"));
+		for (String field : timestampFields) {
+			rules.add(new TimestampDateRule(field));
+		}
+		return new HashMigration(1, rules.toArray(new HashMigrationRule[rules.size()]));
+	}
+
+	/**
+	 * 依次执行规则
+	 * @param field
+	 * @param value
+	 * @return 没有规则命中时返回null
+	 */
+	public HashField migrate(String field, String value) {
+		HashField migrated = null;
+		for (HashMigrationRule rule : rules) {
+			String currentField = migrated == null ? field : migrated.getField();
+			String currentValue = migrated == null ? value : migrated.getValue();
+			if (rule.detect(currentField, currentValue)) {
+				if (migrated == null) {
+					migrated = new HashField(field, value);
+				}
+				rule.rewrite(migrated);
+			}
+		}
+		return migrated;
+	}
+
+	/**
+	 * hash中的版本号是否已经是当前版本，没有规则时总是当前版本
+	 * @param marker
+	 * @return
+	 */
+	public boolean isCurrent(Object marker) {
+		if (rules.length == 0) {
+			return true;
+		}
+		if (marker == null) {
+			return false;
+		}
+		String str = marker.toString();
+		if (versionString.equals(str)) {
+			return true;
+		}
+		try {
+			return Integer.parseInt(str) >= version;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * redis返回的hash中的版本号
+	 * @param raw
+	 * @return 没有版本号时返回null
+	 */
+	public static String version(Map<byte[], byte[]> raw) {
+		for (Map.Entry<byte[], byte[]> entry : raw.entrySet()) {
+			if (AsciiCodec.equals(entry.getKey(), VERSION_FIELD)) {
+				return entry.getValue() == null ? null : AsciiCodec.toString(entry.getValue());
+			}
+		}
+		return null;
+	}
+
+	public boolean isEmpty() {
+		return rules.length == 0;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public String getVersionString() {
+		return versionString;
+	}
+
+	public List<HashMigrationRule> getRules() {
+		return Collections.unmodifiableList(Arrays.asList(rules));
+	}
+
+}
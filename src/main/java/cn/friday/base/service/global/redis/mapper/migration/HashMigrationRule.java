@@ -0,0 +1,28 @@
+package cn.friday.base.service.global.redis.mapper.migration;
+
+/**
+ * hash旧数据的迁移规则
+ * <p>
+ * 读取时按顺序对每个属性执行，{@link #detect(String, String)}返回true时调用{@link #rewrite(HashField)}，
+ * 后面的规则看到的是前面规则改写之后的属性名和值
+ * </p>
+ * @author BravoZu
+ *
+ */
+public interface HashMigrationRule {
+
+	/**
+	 * 是否为需要迁移的旧数据
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	public boolean detect(String field, String value);
+
+	/**
+	 * 改写成当前的格式
+	 * @param field
+	 */
+	public void rewrite(HashField field);
+
+}
@@ -0,0 +1,29 @@
+package cn.friday.base.service.global.redis.mapper.migration;
+
+/**
+ * 旧数据的boolean属性保存成了1/0，改写成true/false
+ * <p>
+ * 和原来的实现一致，空字符串也当作true
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class NumericBooleanRule implements HashMigrationRule {
+
+	private final String field;
+
+	public NumericBooleanRule(String field) {
+		this.field = field;
+	}
+
+	@Override
+	public boolean detect(String field, String value) {
+		return this.field.equals(field) && ("1".contains(value) || "0".equals(value));
+	}
+
+	@Override
+	public void rewrite(HashField field) {
+		field.setValue("0".equals(field.getValue()) ? "false" : "true");
+	}
+
+}
@@ -0,0 +1,28 @@
+package cn.friday.base.service.global.redis.mapper.migration;
+
+import cn.friday.base.service.global.redis.util.DateCodec;
+
+/**
+ * 旧数据的日期属性保存成了以14开头的13位毫秒数，改写成yyyy-MM-dd HH:mm:ss
+ * @author BravoZu
+ *
+ */
+public class TimestampDateRule implements HashMigrationRule {
+
+	private final String field;
+
+	public TimestampDateRule(String field) {
+		this.field = field;
+	}
+
+	@Override
+	public boolean detect(String field, String value) {
+		return this.field.equals(field) && DateCodec.isLegacyTimestamp(value);
+	}
+
+	@Override
+	public void rewrite(HashField field) {
+		field.setValue(DateCodec.format(Long.parseLong(field.getValue())));
+	}
+
+}
@@ -9,6 +9,7 @@ import org.springframework.data.redis.core.BoundHashOperations;
 
 import static com.google.common.base.Preconditions.*;
 import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
+import cn.friday.base.service.global.redis.support.expire.ExpirePolicy;
 import cn.friday.base.service.global.redis.util.MethodHelper;
 
 /**
@@ -20,6 +21,9 @@ public abstract class DynamicFieldHashRedisDao implements IRedisOpsTemplate{
 
 	//设置默认的过期时间
 	private final long defaultSeconds = 60;
+
+	//过期时间策略，默认随机抖动防止同时过期
+	private ExpirePolicy expirePolicy;
 	
 	/**
 	 * 保存
@@ -52,7 +56,7 @@ public abstract class DynamicFieldHashRedisDao implements IRedisOpsTemplate{
 				//设置默认过期时间
 				seconds = defaultSeconds;
 			}
-			MethodHelper.expire(stringRedisTemplate(), key, seconds);
+			MethodHelper.expire(stringRedisTemplate(), key, getExpirePolicy().apply(seconds));
 		}
 		
 		return true;
@@ -132,6 +136,19 @@ public abstract class DynamicFieldHashRedisDao implements IRedisOpsTemplate{
 		oper.delete(field);
 	}
 	
+	public ExpirePolicy getExpirePolicy() {
+		return expirePolicy == null ? ExpirePolicy.NONE : expirePolicy;
+	}
+
+	/**
+	 * 设置过期时间策略，默认{@link ExpirePolicy#NONE}不调整，
+	 * 需要防止同时过期时设置，比如{@link ExpirePolicy#DEFAULT_JITTER}
+	 * @param expirePolicy 
+	 */
+	public void setExpirePolicy(ExpirePolicy expirePolicy) {
+		this.expirePolicy = expirePolicy;
+	}
+
 	private boolean checkDelStatus( String key){
 		 if(  stringRedisTemplate().getExpire(key) == -1  ||  stringRedisTemplate().getExpire(key) == 0){
 			 return true;
@@ -3,9 +3,7 @@ package cn.friday.base.service.global.redis.support;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,10 +11,10 @@ import java.util.Map;
 import java.util.Set;
 
 import com.alibaba.fastjson.JSON;
-import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 
 import cn.friday.base.service.global.redis.dao.IBaseZsetRedisDao;
+import cn.friday.base.service.global.redis.support.key.KeyTemplate;
 import cn.friday.base.service.global.redis.util.Constant;
 
 /**
@@ -39,7 +37,7 @@ public abstract class EntityCacheSupport<T> extends DynamicFieldHashRedisDao {
 
 	private Class<T> entityClazz;
 
-	private String baseKey;
+	private KeyTemplate keyTemplate;
 
 	public EntityCacheSupport(Class<T> entityClazz) {
 		this(entityClazz, DEFAULT_SECONDS);
@@ -202,22 +200,22 @@ public abstract class EntityCacheSupport<T> extends DynamicFieldHashRedisDao {
 
 	private void createKey() {
 		String keyName = createKeyName();
-		this.baseKey = new StringBuffer().append(keyName).append(REDIS_CACHE_SUFFIX).append(":{0}").toString();
+		this.keyTemplate = new KeyTemplate(keyName + REDIS_CACHE_SUFFIX);
 	}
 
 	/**
-	 * 构造key
+	 * 构造key，格式为"类名.Cache:id1:id2"，没有id时为"类名.Cache"
+	 * <p>
+	 * 原来拼接的是Arrays.asList(int[])，有id时key为"类名.Cache:[I@hash"，每次调用都不一样，
+	 * 写入的缓存读不到，删除也不生效。现在使用id本身，旧格式的key不会再被访问，
+	 * 保存时总会设置过期时间，到期后自动删除
+	 * </p>
 	 * @param ids
 	 * @return
 	 *@author BravoZu
 	 */
 	private String buildKey(int... ids) {
-
-		if (ids.length == 0) {
-			return baseKey.replace(":{0}", "");
-		} else {
-			return MessageFormat.format(baseKey, Joiner.on(":").skipNulls().join(Arrays.asList(ids)));
-		}
+		return keyTemplate.keyString(ids);
 	}
 
 }
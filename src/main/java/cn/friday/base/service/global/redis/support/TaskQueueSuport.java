@@ -1,18 +1,15 @@
 package cn.friday.base.service.global.redis.support;
 
-import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
 import com.alibaba.fastjson.JSON;
-import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 
 import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
 import cn.friday.base.service.global.redis.registry.RegistryService;
+import cn.friday.base.service.global.redis.support.key.KeyTemplate;
 import cn.friday.base.service.global.redis.util.FibonacciUtil;
 
 /**
@@ -29,9 +26,17 @@ public abstract class TaskQueueSuport<T> implements IRedisOpsTemplate {
 
 	private String baseKey;
 
+	private KeyTemplate keyTemplate;
+
 	//保存检查队列是否有重复消息的key
 	private String checkKey;
 
+	//没有id时检查队列的key
+	private String checkKeyName;
+
+	//检查队列key中id之后的部分
+	private String checkKeySuffix;
+
 	/**
 	 * 默认的队列后缀
 	 */
@@ -141,10 +146,13 @@ public abstract class TaskQueueSuport<T> implements IRedisOpsTemplate {
 
 	private void createKey() {
 		String keyName = createKeyName();
-		this.baseKey = new StringBuffer().append(baseKey).append(keyName).append(REDIS_QUEUE_SUFFIX).append(":{0}")
-				.toString();
-		this.checkKey = new StringBuffer().append(baseKey).append(keyName).append(REDIS_CHECK_QUEUE_SUFFIX)
-				.append(":{0}").toString();
+		String queueName = new StringBuffer().append(baseKey).append(keyName).append(REDIS_QUEUE_SUFFIX).toString();
+		this.keyTemplate = new KeyTemplate(queueName);
+		this.baseKey = queueName + ":{0}";
+		//和原来一样，检查队列的key以队列的key(包括:{0})开头
+		this.checkKeySuffix = keyName + REDIS_CHECK_QUEUE_SUFFIX;
+		this.checkKey = new StringBuffer().append(baseKey).append(checkKeySuffix).append(":{0}").toString();
+		this.checkKeyName = queueName + checkKeySuffix;
 		RegistryService.registry(baseKey);
 		RegistryService.registry(checkKey);
 	}
@@ -161,7 +169,7 @@ public abstract class TaskQueueSuport<T> implements IRedisOpsTemplate {
 	 * @author BravoZu
 	 */
 	private String buildKey(long... ids) {
-		return baseBuildKey(baseKey, ids);
+		return keyTemplate.keyString(ids);
 	}
 
 	/**
@@ -171,21 +179,14 @@ public abstract class TaskQueueSuport<T> implements IRedisOpsTemplate {
 	 * @author BravoZu
 	 */
 	private String buildCheckKey(long... ids) {
-		return baseBuildKey(checkKey, ids);
-	}
-
-	private String baseBuildKey(String bk, long... ids) {
 		if (ids.length == 0) {
-			return bk.replace(":{0}", "");
-		} else {
-			StringBuilder builder = new StringBuilder();
-			List<Long> list = new ArrayList<Long>();
-			for (int i = 0; i < ids.length; i++) {
-				list.add(ids[i]);
-			}
-			Joiner.on(":").appendTo(builder, list);
-			return MessageFormat.format(bk, builder.toString());
+			return checkKeyName;
 		}
+		//原来的格式中两个{0}都替换成id
+		String queueKey = keyTemplate.keyString(ids);
+		String joinedIds = queueKey.substring(keyTemplate.getPrefix().length());
+		return new StringBuilder(queueKey.length() * 2).append(queueKey).append(checkKeySuffix)
+				.append(KeyTemplate.SEPARATOR).append(joinedIds).toString();
 	}
 
 	/**
@@ -3,6 +3,7 @@ package cn.friday.base.service.global.redis.support.cache;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Joiner;
@@ -11,6 +12,10 @@ import com.google.common.base.Strings;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import cn.friday.base.service.global.redis.support.executor.ExecutorRegistry;
 
 /**
  * 本地缓存抽象实现
@@ -21,10 +26,13 @@ import com.google.common.cache.LoadingCache;
  */
 public abstract class AbstractLocalCache<V> implements LocalCache<String, V> {
 
-	LoadingCache<String, V> cache;
+	LoadingCache<String, CacheEntry<V>> cache;
 
 	String baseKey;
 
+	//空值的缓存时间(秒)，0表示不缓存空值
+	private volatile int nullCacheSecond;
+
 	/**
 	 * 默认本地缓存最大长度
 	 */
@@ -50,57 +58,112 @@ public abstract class AbstractLocalCache<V> implements LocalCache<String, V> {
 	 * @param second：second = -1永不过期
 	 */
 	public AbstractLocalCache(String baseKey, int size, int second) {
+		this(baseKey, size, second, -1);
+	}
+
+	/**
+	 * 
+	 * @param baseKey
+	 * @param size： size = -1时长度不限制
+	 * @param second：写入后多久过期，second = -1永不过期
+	 * @param refreshSecond：写入后多久在后台刷新，刷新完成之前返回旧值，
+	 * 需要小于second才有意义，refreshSecond = -1不刷新
+	 */
+	public AbstractLocalCache(String baseKey, int size, int second, int refreshSecond) {
 		this.baseKey = new StringBuffer().append(baseKey).append(".local").append(":{0}").toString();
-		init(size, second);
+		init(size, second, refreshSecond);
 	}
 
-	private void init(int size, int second) {
-		if (size == -1 && second == -1) {
-			cache = CacheBuilder.newBuilder().build(new CacheLoader<String, V>() {
-				@Override
-				public V load(String key) throws Exception {
-					return reloadData(key);
-				}
-			});
-		} else if (size == -1) {
-			cache = CacheBuilder.newBuilder().expireAfterWrite(second, TimeUnit.SECONDS)
-					.build(new CacheLoader<String, V>() {
-						@Override
-						public V load(String key) throws Exception {
-							return reloadData(key);
-						}
-					});
-		} else if (second == -1) {
-			cache = CacheBuilder.newBuilder().maximumSize(size).build(new CacheLoader<String, V>() {
-				@Override
-				public V load(String key) throws Exception {
-					return reloadData(key);
-				}
-			});
-		} else {
-			cache = CacheBuilder.newBuilder().maximumSize(size).expireAfterWrite(second, TimeUnit.SECONDS)
-					.build(new CacheLoader<String, V>() {
-						@Override
-						public V load(String key) throws Exception {
-							return reloadData(key);
-						}
-					});
+	private void init(int size, int second, int refreshSecond) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+		if (size != -1) {
+			builder.maximumSize(size);
+		}
+		if (second != -1) {
+			builder.expireAfterWrite(second, TimeUnit.SECONDS);
 		}
+		if (refreshSecond > 0) {
+			builder.refreshAfterWrite(refreshSecond, TimeUnit.SECONDS);
+		}
+		cache = builder.build(new CacheLoader<String, CacheEntry<V>>() {
+			@Override
+			public CacheEntry<V> load(String key) throws Exception {
+				return new CacheEntry<V>(reloadData(key), nullCacheSecond);
+			}
+
+			/**
+			 * 后台异步刷新，刷新完成之前继续返回旧值
+			 */
+			@Override
+			public ListenableFuture<CacheEntry<V>> reload(final String key, CacheEntry<V> oldValue) throws Exception {
+				ListenableFutureTask<CacheEntry<V>> task = ListenableFutureTask.create(new Callable<CacheEntry<V>>() {
+					@Override
+					public CacheEntry<V> call() throws Exception {
+						return load(key);
+					}
+				});
+				ExecutorRegistry.getExecutor(ExecutorRegistry.CACHE_REFRESH).execute(task);
+				return task;
+			}
+		});
 	}
 
+	/**
+	 * 查询缓存，不存在时通过reloadData加载，
+	 * 加载结果为空时缓存{@link #getNullCacheSecond()}秒
+	 */
 	@Override
 	public V get(String... seqs) {
+		String key = buildKey(seqs);
 		try {
-			return cache.get(buildKey(seqs));
+			CacheEntry<V> entry = cache.getIfPresent(key);
+			if (entry != null && entry.isExpired()) {
+				cache.invalidate(key);
+			}
+			entry = cache.get(key);
+			if (entry.getValue() == null && nullCacheSecond <= 0) {
+				cache.invalidate(key);
+			}
+			return entry.getValue();
 		} catch (Exception e) {
 			//			e.printStackTrace();
 		}
 		return null;
 	}
 
+	/**
+	 * 只查询本地缓存，不存在时不加载
+	 */
+	@Override
+	public V getIfPresent(String... seqs) {
+		CacheEntry<V> entry = cache.getIfPresent(buildKey(seqs));
+		if (entry == null || entry.isExpired()) {
+			return null;
+		}
+		return entry.getValue();
+	}
+
 	@Override
 	public void put(V v, String... seqs) {
-		cache.put(buildKey(seqs), v);
+		cache.put(buildKey(seqs), new CacheEntry<V>(v, nullCacheSecond));
+	}
+
+	@Override
+	public void invalidate(String... seqs) {
+		cache.invalidate(buildKey(seqs));
+	}
+
+	public int getNullCacheSecond() {
+		return nullCacheSecond;
+	}
+
+	/**
+	 * 设置空值的缓存时间，
+	 * 避免不存在的数据每次都去加载
+	 * @param nullCacheSecond 0表示不缓存空值
+	 */
+	public void setNullCacheSecond(int nullCacheSecond) {
+		this.nullCacheSecond = nullCacheSecond;
 	}
 
 	private String buildKey(String... ids) {
@@ -133,4 +196,29 @@ public abstract class AbstractLocalCache<V> implements LocalCache<String, V> {
 
 	public abstract V reloadData(List<String> ids);
 
+	/**
+	 * 缓存的值，
+	 * 值为空时有单独的过期时间
+	 */
+	static class CacheEntry<V> {
+
+		private final V value;
+
+		private final long expireTime;
+
+		CacheEntry(V value, int nullCacheSecond) {
+			this.value = value;
+			this.expireTime = value == null ? System.currentTimeMillis() + nullCacheSecond * 1000L : 0;
+		}
+
+		V getValue() {
+			return value;
+		}
+
+		boolean isExpired() {
+			return value == null && System.currentTimeMillis() >= expireTime;
+		}
+
+	}
+
 }
@@ -0,0 +1,152 @@
+package cn.friday.base.service.global.redis.support.cache;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
+import cn.friday.base.service.global.redis.support.executor.ExecutorRegistry;
+
+/**
+ * 本地缓存失效消息的发送者
+ * <p>
+ * 需要失效的id先在本地合并，每隔一段时间或者积累到一定数量后
+ * 批量发送到失效通道，消息格式：节点标识|id1,id2,id3。
+ * 调度线程只负责触发，发送在{@link ExecutorRegistry#INVALIDATION}线程池中执行，
+ * 同一时间最多只有一个发送任务在等待
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class CacheInvalidationPublisher {
+
+	private static final Logger logger = Logger.getLogger(CacheInvalidationPublisher.class);
+
+	/**
+	 * 当前节点的标识，用于忽略自己发出的消息
+	 */
+	final static String NODE_ID = Long.toHexString(Double.doubleToLongBits(Math.random()))
+			+ Long.toHexString(System.nanoTime());
+
+	final static char NODE_SEPARATOR = '|';
+
+	final static char ID_SEPARATOR = ',';
+
+	/**
+	 * 默认合并的时间(毫秒)
+	 */
+	private final static long DEFAULT_INTERVAL_MILLIS = 50;
+
+	/**
+	 * 一条消息最多包含的id数
+	 */
+	private final static int MAX_BATCH_SIZE = 500;
+
+	private final IRedisOpsTemplate redisOpsTemplate;
+
+	private final String channel;
+
+	private final long intervalMillis;
+
+	private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			scheduled.set(false);
+			flush();
+		}
+	};
+
+	private final Runnable dispatchTask = new Runnable() {
+		@Override
+		public void run() {
+			dispatch();
+		}
+	};
+
+	public CacheInvalidationPublisher(IRedisOpsTemplate redisOpsTemplate, String channel) {
+		this(redisOpsTemplate, channel, DEFAULT_INTERVAL_MILLIS);
+	}
+
+	public CacheInvalidationPublisher(IRedisOpsTemplate redisOpsTemplate, String channel, long intervalMillis) {
+		this.redisOpsTemplate = redisOpsTemplate;
+		this.channel = channel;
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * 通知其它节点失效对应的id
+	 * @param id
+	 */
+	public void publish(String id) {
+		pending.add(id);
+		if (!scheduled.compareAndSet(false, true)) {
+			return;
+		}
+		if (pending.size() >= MAX_BATCH_SIZE) {
+			dispatch();
+		} else {
+			ExecutorRegistry.getScheduler().schedule(dispatchTask, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 把发送任务交给线程池，被拒绝时等待下一次失效重新触发
+	 */
+	private void dispatch() {
+		try {
+			ExecutorRegistry.getExecutor(ExecutorRegistry.INVALIDATION).execute(flushTask);
+		} catch (RejectedExecutionException e) {
+			scheduled.set(false);
+			logger.warn("cache invalidation flush rejected, channel:" + channel + ", pending:" + pending.size());
+		}
+	}
+
+	/**
+	 * 发送所有待失效的id
+	 */
+	public void flush() {
+		StringBuilder builder = new StringBuilder().append(NODE_ID).append(NODE_SEPARATOR);
+		int prefixLength = builder.length();
+		int count = 0;
+		Iterator<String> iterator = pending.iterator();
+		while (iterator.hasNext()) {
+			String id = iterator.next();
+			iterator.remove();
+			if (count > 0) {
+				builder.append(ID_SEPARATOR);
+			}
+			builder.append(id);
+			if (++count == MAX_BATCH_SIZE) {
+				send(builder.toString());
+				builder.setLength(prefixLength);
+				count = 0;
+			}
+		}
+		if (count > 0) {
+			send(builder.toString());
+		}
+	}
+
+	private void send(String message) {
+		try {
+			redisOpsTemplate.stringRedisTemplate().convertAndSend(channel, message);
+		} catch (Exception e) {
+			logger.error("publish cache invalidation failed, channel:" + channel, e);
+		}
+	}
+
+	public String getChannel() {
+		return channel;
+	}
+
+}
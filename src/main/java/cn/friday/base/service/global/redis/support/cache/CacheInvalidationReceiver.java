@@ -0,0 +1,59 @@
+package cn.friday.base.service.global.redis.support.cache;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+
+/**
+ * 本地缓存失效消息的订阅者，
+ * 收到其它节点发出的消息后失效对应的本地缓存
+ * @see CacheInvalidationPublisher
+ * @author BravoZu
+ *
+ */
+public abstract class CacheInvalidationReceiver implements MessageListener {
+
+	private final String channel;
+
+	RedisSerializer<String> serializer = new StringRedisSerializer();
+
+	public CacheInvalidationReceiver(String channel) {
+		this.channel = channel;
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		String body = serializer.deserialize(message.getBody());
+		if (Strings.isNullOrEmpty(body)) {
+			return;
+		}
+		int index = body.indexOf(CacheInvalidationPublisher.NODE_SEPARATOR);
+		if (index < 0 || CacheInvalidationPublisher.NODE_ID.equals(body.substring(0, index))) {
+			//自己发出的消息，本地已经失效
+			return;
+		}
+		for (String id : Splitter.on(CacheInvalidationPublisher.ID_SEPARATOR).omitEmptyStrings()
+				.split(body.substring(index + 1))) {
+			invalidate(id);
+		}
+	}
+
+	/**
+	 * 失效对应id的本地缓存
+	 * @param id
+	 */
+	protected abstract void invalidate(String id);
+
+	/**
+	 * 获取消息通道
+	 * @return
+	 */
+	public String getChannel() {
+		return channel;
+	}
+
+}
@@ -0,0 +1,173 @@
+package cn.friday.base.service.global.redis.support.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热点id探测
+ * <p>
+ * 通过带衰减的Count-Min Sketch统计每个id的访问频率，
+ * 频率达到阈值的id被提升为热点，每累计一定次数的访问后所有计数减半，
+ * 减半后低于阈值一半的热点被降级并通知{@link Listener}。
+ * 计数器的并发更新不加锁，偶尔丢失的计数对频率估计没有影响
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class HotKeyDetector {
+
+	private final static int DEPTH = 4;
+
+	private final static long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+			0x85EBCA77C2B2AE63L };
+
+	/**
+	 * 每个计数器的上限
+	 */
+	private final static int MAX_COUNT = 0xFFFF;
+
+	private final int[][] table;
+
+	private final int mask;
+
+	private final int threshold;
+
+	/**
+	 * 累计多少次访问后衰减一次
+	 */
+	private final int sampleSize;
+
+	private final AtomicInteger additions = new AtomicInteger();
+
+	private final ConcurrentMap<Long, Boolean> hotKeys = new ConcurrentHashMap<Long, Boolean>();
+
+	private final Listener listener;
+
+	/**
+	 * @param threshold 提升为热点的访问次数
+	 * @param expectedKeys 预计统计的id数，决定sketch的宽度
+	 * @param listener 
+	 */
+	public HotKeyDetector(int threshold, int expectedKeys, Listener listener) {
+		int width = Integer.highestOneBit(Math.max(expectedKeys, 64) - 1) << 1;
+		this.table = new int[DEPTH][width];
+		this.mask = width - 1;
+		this.threshold = Math.min(threshold, MAX_COUNT);
+		this.sampleSize = width * 10;
+		this.listener = listener;
+	}
+
+	/**
+	 * 记录一次访问
+	 * @param id
+	 * @return 当前是否热点
+	 */
+	public boolean record(long id) {
+		int estimate = Integer.MAX_VALUE;
+		for (int i = 0; i < DEPTH; i++) {
+			int index = index(id, i);
+			int count = table[i][index];
+			if (count < MAX_COUNT) {
+				table[i][index] = ++count;
+			}
+			estimate = Math.min(estimate, count);
+		}
+		if (additions.incrementAndGet() >= sampleSize) {
+			age();
+		}
+		if (estimate >= threshold) {
+			hotKeys.putIfAbsent(id, Boolean.TRUE);
+			return true;
+		}
+		return hotKeys.containsKey(id);
+	}
+
+	/**
+	 * 估计的访问频率
+	 * @param id
+	 * @return 
+	 */
+	public int frequency(long id) {
+		int estimate = Integer.MAX_VALUE;
+		for (int i = 0; i < DEPTH; i++) {
+			estimate = Math.min(estimate, table[i][index(id, i)]);
+		}
+		return estimate;
+	}
+
+	public boolean isHot(long id) {
+		return hotKeys.containsKey(id);
+	}
+
+	/**
+	 * 当前热点id及其频率，按频率从高到低排序
+	 * @return 
+	 */
+	public Map<Long, Integer> getHotKeys() {
+		List<Map.Entry<Long, Integer>> entries = new ArrayList<Map.Entry<Long, Integer>>();
+		for (Long id : hotKeys.keySet()) {
+			entries.add(new AbstractMap.SimpleEntry<Long, Integer>(id, frequency(id)));
+		}
+		Collections.sort(entries, new Comparator<Map.Entry<Long, Integer>>() {
+			@Override
+			public int compare(Map.Entry<Long, Integer> o1, Map.Entry<Long, Integer> o2) {
+				return o2.getValue().compareTo(o1.getValue());
+			}
+		});
+		Map<Long, Integer> report = new LinkedHashMap<Long, Integer>();
+		for (Map.Entry<Long, Integer> entry : entries) {
+			report.put(entry.getKey(), entry.getValue());
+		}
+		return report;
+	}
+
+	/**
+	 * 衰减所有计数，降级冷却的热点
+	 */
+	private void age() {
+		int current = additions.get();
+		if (current < sampleSize || !additions.compareAndSet(current, 0)) {
+			return;
+		}
+		for (int[] row : table) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] >>>= 1;
+			}
+		}
+		Iterator<Long> iterator = hotKeys.keySet().iterator();
+		while (iterator.hasNext()) {
+			long id = iterator.next();
+			if (frequency(id) < threshold / 2) {
+				iterator.remove();
+				if (listener != null) {
+					listener.onDemote(id);
+				}
+			}
+		}
+	}
+
+	private int index(long id, int i) {
+		long hash = (id + SEEDS[i]) * SEEDS[(i + 1) % DEPTH];
+		hash ^= hash >>> 32;
+		return (int) hash & mask;
+	}
+
+	/**
+	 * 热点降级的通知
+	 */
+	public interface Listener {
+
+		void onDemote(long id);
+
+	}
+
+}
@@ -4,6 +4,10 @@ public interface LocalCache<K, V> {
 
 	V get(String... seqs);
 
+	V getIfPresent(String... seqs);
+
 	void put(V v, String... seqs);
 
+	void invalidate(String... seqs);
+
 }
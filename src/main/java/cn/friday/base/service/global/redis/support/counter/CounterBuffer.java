@@ -0,0 +1,276 @@
+package cn.friday.base.service.global.redis.support.counter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+import org.apache.log4j.Logger;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.google.common.collect.Lists;
+
+import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
+import cn.friday.base.service.global.redis.support.executor.ExecutorRegistry;
+
+/**
+ * 计数器的本地合并
+ * <p>
+ * 同一个key同一个field的增量先在本地累加，每隔一段时间或者待刷新的计数器达到上限后，
+ * 通过pipeline批量HINCRBY写入redis。回复失败的增量会重新合并到本地，下次刷新时重试，进程退出时刷新所有未写入的增量。
+ * 本地合并就是按(id, field)在{@link ConcurrentHashMap}上merge，没有额外的分段
+ * </p>
+ * <p>
+ * {@link #get(long, String)}和刷新互斥：读取时redis中的值和本地增量来自同一次刷新之后，
+ * 每个增量只计算一次，不会既在redis中又在本地被重复计算，也不会两边都读不到。
+ * 读取期间并发累加的增量可能计入也可能不计入；正在刷新时读取需要等待刷新完成，
+ * 最多等待一次刷新所有批次的pipeline往返时间
+ * </p>
+ * @author BravoZu
+ *
+ */
+public abstract class CounterBuffer {
+
+	private static final Logger logger = Logger.getLogger(CounterBuffer.class);
+
+	/**
+	 * 默认刷新间隔(毫秒)
+	 */
+	public final static long DEFAULT_FLUSH_MILLIS = 1000;
+
+	/**
+	 * 默认待刷新计数器的上限
+	 */
+	public final static int DEFAULT_MAX_PENDING = 1000;
+
+	private final static int PIPELINE_SIZE = 100;
+
+	/**
+	 * 合并增量，增量抵消为0时移除
+	 */
+	private final static BiFunction<Long, Long, Long> SUM = new BiFunction<Long, Long, Long>() {
+		@Override
+		public Long apply(Long a, Long b) {
+			long sum = a + b;
+			return sum == 0 ? null : sum;
+		}
+	};
+
+	private final IRedisOpsTemplate redisOpsTemplate;
+
+	private final long flushMillis;
+
+	private final int maxPending;
+
+	private final ConcurrentMap<CounterKey, Long> pending = new ConcurrentHashMap<CounterKey, Long>();
+
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	//刷新持有写锁，读取计数持有读锁
+	private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	//刷新任务被丢弃时，下一次累加会重新定时
+	private final Runnable dispatchTask = new Runnable() {
+		@Override
+		public void run() {
+			scheduled.set(false);
+			ExecutorRegistry.getExecutor(ExecutorRegistry.COUNTER).execute(flushTask);
+		}
+	};
+
+	public CounterBuffer(IRedisOpsTemplate redisOpsTemplate, String name, long flushMillis, int maxPending) {
+		this.redisOpsTemplate = redisOpsTemplate;
+		this.flushMillis = flushMillis;
+		this.maxPending = maxPending;
+		ExecutorRegistry.addShutdownFlush("redis-counter-" + name, new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+	}
+
+	/**
+	 * 累加增量
+	 * @param id
+	 * @param field
+	 * @param delta 
+	 */
+	public void add(long id, String field, long delta) {
+		if (delta == 0) {
+			return;
+		}
+		pending.merge(new CounterKey(id, field), delta, SUM);
+		if (pending.size() >= maxPending) {
+			ExecutorRegistry.getExecutor(ExecutorRegistry.COUNTER).execute(flushTask);
+		} else if (scheduled.compareAndSet(false, true)) {
+			ExecutorRegistry.getScheduler().schedule(dispatchTask, flushMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 读取计数：redis中的值加上还没有写入redis的增量
+	 * @param id
+	 * @param field
+	 * @return 
+	 */
+	public long get(final long id, String field) {
+		final RedisSerializer<String> serializer = redisOpsTemplate.stringRedisTemplate().getStringSerializer();
+		final byte[] rawField = serializer.serialize(field);
+		flushLock.readLock().lock();
+		try {
+			String value = redisOpsTemplate.stringRedisTemplate().execute(new RedisCallback<String>() {
+				@Override
+				public String doInRedis(RedisConnection connection) throws DataAccessException {
+					return serializer.deserialize(connection.hGet(key(id), rawField));
+				}
+			});
+			Long delta = pending.get(new CounterKey(id, field));
+			return (value == null ? 0 : Long.parseLong(value)) + (delta == null ? 0 : delta);
+		} finally {
+			flushLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 把所有增量写入redis
+	 */
+	public void flush() {
+		flushLock.writeLock().lock();
+		try {
+			List<Map.Entry<CounterKey, Long>> deltas = new ArrayList<Map.Entry<CounterKey, Long>>();
+			Iterator<CounterKey> iterator = pending.keySet().iterator();
+			while (iterator.hasNext()) {
+				CounterKey key = iterator.next();
+				//取出后累加的增量重新放入本地，下次刷新
+				Long delta = pending.remove(key);
+				if (delta == null || delta == 0) {
+					continue;
+				}
+				deltas.add(new AbstractMap.SimpleImmutableEntry<CounterKey, Long>(key, delta));
+			}
+			for (List<Map.Entry<CounterKey, Long>> partition : Lists.partition(deltas, PIPELINE_SIZE)) {
+				write(partition);
+			}
+		} finally {
+			flushLock.writeLock().unlock();
+		}
+	}
+
+	private void write(final List<Map.Entry<CounterKey, Long>> partition) {
+		final RedisSerializer<String> serializer = redisOpsTemplate.stringRedisTemplate().getStringSerializer();
+		List<Object> results = null;
+		boolean failed = false;
+		try {
+			redisOpsTemplate.stringRedisTemplate().executePipelined(new RedisCallback<Object>() {
+				@Override
+				public Object doInRedis(RedisConnection connection) throws DataAccessException {
+					for (Map.Entry<CounterKey, Long> entry : partition) {
+						CounterKey key = entry.getKey();
+						connection.hIncrBy(key(key.id), serializer.serialize(key.field),
+								entry.getValue());
+					}
+					return null;
+				}
+			});
+		} catch (Exception e) {
+			logger.error("flush counters failed, size:" + partition.size(), e);
+			failed = true;
+			results = pipelineResults(e);
+			if (results != null && results.size() != partition.size()) {
+				results = null;
+			}
+		}
+		for (int i = 0; i < partition.size(); i++) {
+			Map.Entry<CounterKey, Long> entry = partition.get(i);
+			//没有每条命令的回复时无法确定是否写入，全部合并回本地
+			boolean commandFailed = failed && (results == null || results.get(i) instanceof Throwable);
+			if (commandFailed) {
+				//合并回本地，下次重试
+				pending.merge(entry.getKey(), entry.getValue(), SUM);
+			} else {
+				flushed(entry.getKey().id);
+			}
+		}
+	}
+
+	/**
+	 * pipeline中每条命令的回复，失败的命令为异常
+	 * @param e
+	 * @return 不是pipeline的异常时返回null
+	 */
+	private static List<Object> pipelineResults(Throwable e) {
+		Throwable current = e;
+		while (current != null) {
+			if (current instanceof RedisPipelineException) {
+				return ((RedisPipelineException) current).getPipelineResult();
+			}
+			current = current.getCause();
+		}
+		return null;
+	}
+
+	/**
+	 * 计数器所在的redis key
+	 * @param id
+	 * @return 
+	 */
+	protected abstract byte[] key(long id);
+
+	/**
+	 * 增量写入redis后的回调
+	 * @param id 
+	 */
+	protected void flushed(long id) {
+	}
+
+	public int getPendingSize() {
+		return pending.size();
+	}
+
+	private static class CounterKey {
+
+		private final long id;
+
+		private final String field;
+
+		CounterKey(long id, String field) {
+			this.id = id;
+			this.field = field;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (id ^ (id >>> 32)) * 31 + field.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CounterKey)) {
+				return false;
+			}
+			CounterKey other = (CounterKey) obj;
+			return id == other.id && field.equals(other.field);
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+package cn.friday.base.service.global.redis.support.executor;
+
+import cn.friday.base.service.global.redis.util.MethodHelper;
+
+/**
+ * 线程池配置
+ * @author BravoZu
+ *
+ */
+public class ExecutorConfig {
+
+	/**
+	 * 默认队列长度
+	 */
+	public final static int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/**
+	 * 默认空闲线程的存活时间(秒)
+	 */
+	public final static int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+
+	/**
+	 * 默认JVM退出时等待队列中任务执行完的时间(秒)，和原来的{@code MoreExecutors.getExitingExecutorService}一致
+	 */
+	public final static int DEFAULT_SHUTDOWN_WAIT_SECONDS = 120;
+
+	private int threads;
+
+	private int queueCapacity;
+
+	private int keepAliveSeconds;
+
+	private RejectionPolicy rejectionPolicy;
+
+	private int shutdownWaitSeconds;
+
+	public ExecutorConfig() {
+	}
+
+	public ExecutorConfig(int threads, int queueCapacity, RejectionPolicy rejectionPolicy) {
+		this.threads = threads;
+		this.queueCapacity = queueCapacity;
+		this.rejectionPolicy = rejectionPolicy;
+	}
+
+	public int getThreads() {
+		return threads <= 0 ? MethodHelper.defaultMaxThreads() : threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity <= 0 ? DEFAULT_QUEUE_CAPACITY : queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getKeepAliveSeconds() {
+		return keepAliveSeconds <= 0 ? DEFAULT_KEEP_ALIVE_SECONDS : keepAliveSeconds;
+	}
+
+	public void setKeepAliveSeconds(int keepAliveSeconds) {
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+
+	public RejectionPolicy getRejectionPolicy() {
+		return rejectionPolicy == null ? RejectionPolicy.CALLER_RUNS : rejectionPolicy;
+	}
+
+	public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+		this.rejectionPolicy = rejectionPolicy;
+	}
+
+	/**
+	 * JVM退出时最多等待多长时间(秒)，只对{@link ExecutorRegistry}中需要退出时执行完的线程池生效
+	 * @return 
+	 */
+	public int getShutdownWaitSeconds() {
+		return shutdownWaitSeconds <= 0 ? DEFAULT_SHUTDOWN_WAIT_SECONDS : shutdownWaitSeconds;
+	}
+
+	public void setShutdownWaitSeconds(int shutdownWaitSeconds) {
+		this.shutdownWaitSeconds = shutdownWaitSeconds;
+	}
+
+}
@@ -0,0 +1,222 @@
+package cn.friday.base.service.global.redis.support.executor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * 后台任务线程池的注册中心
+ * <p>
+ * 所有dao、同步器、加载器共用按名称注册的有界线程池，
+ * 定时类的任务共用一个调度线程，调度线程只负责触发，耗时的工作交给对应的线程池。
+ * 需要修改配置时在第一次使用前调用{@link #configure(String, ExecutorConfig)}。
+ * 线程都是守护线程。JVM退出时只有一个关闭钩子，按顺序执行：先执行通过{@link #addShutdownFlush(String, Runnable)}
+ * 注册的刷新(合并写队列、计数器等)，再让写数据库和redis的线程池({@link #SYNC}、{@link #WRITE_BEHIND}、{@link #COUNTER})
+ * 停止接收新任务，并且最多等待{@link ExecutorConfig#getShutdownWaitSeconds()}秒让队列中的任务执行完
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class ExecutorRegistry {
+
+	private static final Logger logger = Logger.getLogger(ExecutorRegistry.class);
+
+	/**
+	 * 同步器
+	 */
+	public final static String SYNC = "redis-sync";
+
+	/**
+	 * 本地缓存后台刷新
+	 */
+	public final static String CACHE_REFRESH = "redis-local-cache-refresh";
+
+	/**
+	 * id号段预取
+	 */
+	public final static String ID_PREFETCH = "redis-id-prefetch";
+
+	/**
+	 * pipeline合并发送
+	 */
+	public final static String PIPELINE = "redis-pipeline-batcher";
+
+	/**
+	 * 合并写
+	 */
+	public final static String WRITE_BEHIND = "redis-write-behind";
+
+	/**
+	 * 计数器刷新
+	 */
+	public final static String COUNTER = "redis-counter";
+
+	/**
+	 * 旧数据迁移写回
+	 */
+	public final static String READ_REPAIR = "redis-read-repair";
+
+	/**
+	 * 本地缓存失效消息发送
+	 */
+	public final static String INVALIDATION = "redis-cache-invalidation";
+
+	/**
+	 * JVM退出时需要等待队列中的任务执行完的线程池
+	 */
+	private final static Set<String> drainOnShutdown = ImmutableSet.of(SYNC, WRITE_BEHIND, COUNTER);
+
+	private final static ConcurrentMap<String, ExecutorConfig> configs = new ConcurrentHashMap<String, ExecutorConfig>();
+
+	private final static ConcurrentMap<String, InstrumentedExecutor> executors = new ConcurrentHashMap<String, InstrumentedExecutor>();
+
+	/**
+	 * JVM退出时在线程池关闭之前执行的刷新，按注册顺序执行
+	 */
+	private final static List<ShutdownFlush> shutdownFlushes = new CopyOnWriteArrayList<ShutdownFlush>();
+
+	private final static ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("redis-scheduler-%d").setDaemon(true).build());
+
+	static {
+		//提交给pipeline线程池的任务来自调度线程，不能由提交的线程执行
+		configs.put(PIPELINE, new ExecutorConfig(0, 0, RejectionPolicy.ABORT));
+		configs.put(ID_PREFETCH, new ExecutorConfig(1, 64, RejectionPolicy.CALLER_RUNS));
+		configs.put(WRITE_BEHIND, new ExecutorConfig(2, 256, RejectionPolicy.CALLER_RUNS));
+		configs.put(COUNTER, new ExecutorConfig(1, 16, RejectionPolicy.DISCARD));
+		configs.put(READ_REPAIR, new ExecutorConfig(1, 1024, RejectionPolicy.DISCARD));
+		//同时最多只有一个发送任务在排队，被拒绝时由下一次失效重新触发
+		configs.put(INVALIDATION, new ExecutorConfig(1, 4, RejectionPolicy.ABORT));
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				shutdown();
+			}
+		}, "redis-executor-shutdown"));
+	}
+
+	private ExecutorRegistry() {
+	}
+
+	/**
+	 * 修改线程池配置，只对还没有创建的线程池生效
+	 * @param name
+	 * @param config 
+	 */
+	public static void configure(String name, ExecutorConfig config) {
+		if (executors.containsKey(name)) {
+			throw new IllegalStateException("executor already started: " + name);
+		}
+		configs.put(name, config);
+	}
+
+	/**
+	 * 获取对应名称的线程池，不存在时按照配置创建
+	 * @param name
+	 * @return 
+	 */
+	public static InstrumentedExecutor getExecutor(String name) {
+		InstrumentedExecutor executor = executors.get(name);
+		if (executor == null) {
+			ExecutorConfig config = configs.get(name);
+			if (config == null) {
+				config = new ExecutorConfig();
+			}
+			InstrumentedExecutor created = new InstrumentedExecutor(name, config);
+			executor = executors.putIfAbsent(name, created);
+			if (executor == null) {
+				executor = created;
+			} else {
+				created.shutdown();
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * 注册JVM退出时需要执行的刷新，在线程池关闭之前执行，刷新中提交的任务仍然会被执行
+	 * @param name 用于日志
+	 * @param flush 
+	 */
+	public static void addShutdownFlush(String name, Runnable flush) {
+		shutdownFlushes.add(new ShutdownFlush(name, flush));
+	}
+
+	/**
+	 * 先执行所有刷新，再关闭线程池并等待队列中的任务执行完
+	 */
+	private static void shutdown() {
+		for (ShutdownFlush flush : shutdownFlushes) {
+			try {
+				flush.flush.run();
+			} catch (Throwable e) {
+				logger.error("flush on shutdown failed, name:" + flush.name, e);
+			}
+		}
+		for (String name : drainOnShutdown) {
+			InstrumentedExecutor executor = executors.get(name);
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+		for (String name : drainOnShutdown) {
+			InstrumentedExecutor executor = executors.get(name);
+			if (executor == null) {
+				continue;
+			}
+			ExecutorConfig config = configs.get(name);
+			long waitSeconds = config == null ? new ExecutorConfig().getShutdownWaitSeconds()
+					: config.getShutdownWaitSeconds();
+			try {
+				if (!executor.awaitTermination(waitSeconds, TimeUnit.SECONDS)) {
+					logger.warn("executor not terminated on shutdown, " + executor);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 共用的调度线程
+	 * @return 
+	 */
+	public static ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * 已经创建的线程池，用于监控
+	 * @return 
+	 */
+	public static Map<String, InstrumentedExecutor> getExecutors() {
+		return Collections.unmodifiableMap(executors);
+	}
+
+	private static class ShutdownFlush {
+
+		private final String name;
+
+		private final Runnable flush;
+
+		ShutdownFlush(String name, Runnable flush) {
+			this.name = name;
+			this.flush = flush;
+		}
+
+	}
+
+}
@@ -0,0 +1,160 @@
+package cn.friday.base.service.global.redis.support.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * 有界并且带统计的线程池
+ * <p>
+ * 统计队列长度、被拒绝的任务数、任务在队列中的等待时间和执行时间，关闭后被拒绝的任务会记录日志
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class InstrumentedExecutor extends ThreadPoolExecutor {
+
+	private static final Logger logger = Logger.getLogger(InstrumentedExecutor.class);
+
+	private final String name;
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong executed = new AtomicLong();
+
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+
+	private final AtomicLong totalRunNanos = new AtomicLong();
+
+	private volatile long maxWaitNanos;
+
+	private volatile long maxRunNanos;
+
+	InstrumentedExecutor(String name, ExecutorConfig config) {
+		super(config.getThreads(), config.getThreads(), config.getKeepAliveSeconds(), TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(config.getQueueCapacity()),
+				new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+		this.name = name;
+		allowCoreThreadTimeOut(true);
+		final RejectedExecutionHandler handler = config.getRejectionPolicy().handler();
+		setRejectedExecutionHandler(new RejectedExecutionHandler() {
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+				rejected.incrementAndGet();
+				if (executor.isShutdown()) {
+					//关闭后所有拒绝策略都不会执行任务
+					logger.warn("task rejected after shutdown, executor:" + InstrumentedExecutor.this.name
+							+ ", task:" + r);
+				}
+				handler.rejectedExecution(r, executor);
+			}
+		});
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		super.execute(new TimedTask(command));
+	}
+
+	private void record(long waitNanos, long runNanos) {
+		executed.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		totalRunNanos.addAndGet(runNanos);
+		if (waitNanos > maxWaitNanos) {
+			maxWaitNanos = waitNanos;
+		}
+		if (runNanos > maxRunNanos) {
+			maxRunNanos = runNanos;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 队列中等待的任务数
+	 * @return 
+	 */
+	public int getQueueDepth() {
+		return getQueue().size();
+	}
+
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	public long getExecutedCount() {
+		return executed.get();
+	}
+
+	/**
+	 * 平均排队时间(微秒)
+	 * @return 
+	 */
+	public long getAvgWaitMicros() {
+		long count = executed.get();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get() / count);
+	}
+
+	public long getMaxWaitMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(maxWaitNanos);
+	}
+
+	/**
+	 * 平均执行时间(微秒)
+	 * @return 
+	 */
+	public long getAvgRunMicros() {
+		long count = executed.get();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalRunNanos.get() / count);
+	}
+
+	public long getMaxRunMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(maxRunNanos);
+	}
+
+	@Override
+	public String toString() {
+		return name + "[threads=" + getPoolSize() + ", active=" + getActiveCount() + ", queue=" + getQueueDepth()
+				+ ", executed=" + getExecutedCount() + ", rejected=" + getRejectedCount() + ", avgWaitMicros="
+				+ getAvgWaitMicros() + ", avgRunMicros=" + getAvgRunMicros() + "]";
+	}
+
+	/**
+	 * 记录提交时间的任务
+	 */
+	private class TimedTask implements Runnable {
+
+		private final Runnable task;
+
+		private final long submitNanos = System.nanoTime();
+
+		TimedTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			try {
+				task.run();
+			} finally {
+				record(start - submitNanos, System.nanoTime() - start);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package cn.friday.base.service.global.redis.support.executor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 线程池队列满时的处理方式
+ * @author BravoZu
+ *
+ */
+public enum RejectionPolicy {
+
+	/**
+	 * 由提交任务的线程执行
+	 */
+	CALLER_RUNS {
+		@Override
+		RejectedExecutionHandler handler() {
+			return new ThreadPoolExecutor.CallerRunsPolicy();
+		}
+	},
+
+	/**
+	 * 抛出RejectedExecutionException
+	 */
+	ABORT {
+		@Override
+		RejectedExecutionHandler handler() {
+			return new ThreadPoolExecutor.AbortPolicy();
+		}
+	},
+
+	/**
+	 * 丢弃当前任务
+	 */
+	DISCARD {
+		@Override
+		RejectedExecutionHandler handler() {
+			return new ThreadPoolExecutor.DiscardPolicy();
+		}
+	},
+
+	/**
+	 * 丢弃队列中最早的任务
+	 */
+	DISCARD_OLDEST {
+		@Override
+		RejectedExecutionHandler handler() {
+			return new ThreadPoolExecutor.DiscardOldestPolicy();
+		}
+	};
+
+	abstract RejectedExecutionHandler handler();
+
+}
@@ -0,0 +1,104 @@
+package cn.friday.base.service.global.redis.support.expire;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import cn.friday.base.service.global.redis.util.Constant;
+
+/**
+ * 过期时间策略，防止同一批写入的key在同一时刻过期(缓存雪崩)
+ * <p>
+ * 先在原过期时间上增加±jitterPercent%的随机抖动，
+ * 再随机分配到bucketCount个间隔为bucketSeconds的时间桶中的一个。
+ * jitterPercent为{@link Constant.Redis#AVALANCHE_CLOSED}时关闭抖动。
+ * dao默认使用{@link #NONE}，和原来一样使用原过期时间
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class ExpirePolicy {
+
+	/**
+	 * 默认抖动百分比
+	 */
+	public final static long DEFAULT_JITTER_PERCENT = 10;
+
+	/**
+	 * 不做任何调整
+	 */
+	public final static ExpirePolicy NONE = new ExpirePolicy(Constant.Redis.AVALANCHE_CLOSED, 0, 0);
+
+	/**
+	 * ±10%的随机抖动，dao默认是{@link #NONE}，需要时通过setExpirePolicy开启
+	 */
+	public final static ExpirePolicy DEFAULT_JITTER = new ExpirePolicy(DEFAULT_JITTER_PERCENT, 0, 0);
+
+	private final long jitterPercent;
+
+	private final int bucketSeconds;
+
+	private final int bucketCount;
+
+	/**
+	 * @param jitterPercent 抖动的百分比，{@link Constant.Redis#AVALANCHE_CLOSED}表示关闭
+	 * @param bucketSeconds 时间桶的间隔(秒)，小于等于0表示不分桶
+	 * @param bucketCount 时间桶的个数
+	 */
+	public ExpirePolicy(long jitterPercent, int bucketSeconds, int bucketCount) {
+		this.jitterPercent = jitterPercent;
+		this.bucketSeconds = bucketSeconds;
+		this.bucketCount = bucketCount;
+	}
+
+	/**
+	 * 只做随机抖动
+	 * @param jitterPercent
+	 * @return 
+	 */
+	public static ExpirePolicy jitter(long jitterPercent) {
+		if (jitterPercent == Constant.Redis.AVALANCHE_CLOSED) {
+			return NONE;
+		}
+		return new ExpirePolicy(jitterPercent, 0, 0);
+	}
+
+	/**
+	 * 只分桶
+	 * @param bucketSeconds
+	 * @param bucketCount
+	 * @return 
+	 */
+	public static ExpirePolicy bucketed(int bucketSeconds, int bucketCount) {
+		return new ExpirePolicy(Constant.Redis.AVALANCHE_CLOSED, bucketSeconds, bucketCount);
+	}
+
+	/**
+	 * 计算实际的过期时间
+	 * @param seconds 原过期时间(秒)，小于等于0表示不过期，原样返回
+	 * @return 
+	 */
+	public long apply(long seconds) {
+		if (seconds <= 0) {
+			return seconds;
+		}
+		long result = seconds;
+		if (jitterPercent > 0) {
+			long range = seconds * jitterPercent / 100;
+			if (range > 0) {
+				result += ThreadLocalRandom.current().nextLong(-range, range + 1);
+			}
+		}
+		if (bucketSeconds > 0 && bucketCount > 1) {
+			result += (long) ThreadLocalRandom.current().nextInt(bucketCount) * bucketSeconds;
+		}
+		return Math.max(result, 1);
+	}
+
+	public int apply(int seconds) {
+		return (int) Math.min(apply((long) seconds), Integer.MAX_VALUE);
+	}
+
+	public boolean isClosed() {
+		return jitterPercent <= 0 && (bucketSeconds <= 0 || bucketCount <= 1);
+	}
+
+}
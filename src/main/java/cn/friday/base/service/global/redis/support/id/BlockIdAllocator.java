@@ -0,0 +1,236 @@
+package cn.friday.base.service.global.redis.support.id;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
+import cn.friday.base.service.global.redis.support.executor.ExecutorRegistry;
+
+/**
+ * 号段id生成器
+ * <p>
+ * 通过INCRBY一次租用一段id，在本地分配，
+ * 当前号段剩余不足1/4时在后台预取下一个号段。
+ * 号段大小根据实际消耗速度自适应，
+ * 进程重启后未分配完的id会被丢弃，所以id不保证连续
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class BlockIdAllocator implements IdAllocator {
+
+	private static final Logger logger = Logger.getLogger(BlockIdAllocator.class);
+
+	/**
+	 * 默认的初始号段大小
+	 */
+	private final static int DEFAULT_INITIAL_BLOCK_SIZE = 10;
+
+	/**
+	 * 默认的最大号段大小
+	 */
+	private final static int DEFAULT_MAX_BLOCK_SIZE = 10000;
+
+	/**
+	 * 一个号段期望的使用时间(毫秒)
+	 */
+	private final static long DEFAULT_TARGET_LEASE_MILLIS = 1000;
+
+	/**
+	 * 剩余多少比例时开始预取
+	 */
+	private final static int PREFETCH_DIVISOR = 4;
+
+	/**
+	 * 号段已经切换，不再预取
+	 */
+	private final static FutureTask<Block> SWITCHED = new FutureTask<Block>(new Callable<Block>() {
+		@Override
+		public Block call() throws Exception {
+			return null;
+		}
+	});
+
+	private final IRedisOpsTemplate redisOpsTemplate;
+
+	private final String key;
+
+	private final int maxBlockSize;
+
+	private final long targetLeaseMillis;
+
+	private volatile int blockSize;
+
+	private volatile Block current;
+
+	public BlockIdAllocator(IRedisOpsTemplate redisOpsTemplate, String key) {
+		this(redisOpsTemplate, key, DEFAULT_INITIAL_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE, DEFAULT_TARGET_LEASE_MILLIS);
+	}
+
+	/**
+	 * 
+	 * @param redisOpsTemplate
+	 * @param key 计数器的key
+	 * @param initialBlockSize 初始号段大小
+	 * @param maxBlockSize 最大号段大小
+	 * @param targetLeaseMillis 一个号段期望的使用时间，用于调整号段大小
+	 */
+	public BlockIdAllocator(IRedisOpsTemplate redisOpsTemplate, String key, int initialBlockSize, int maxBlockSize,
+			long targetLeaseMillis) {
+		this.redisOpsTemplate = redisOpsTemplate;
+		this.key = key;
+		this.blockSize = Math.max(1, initialBlockSize);
+		this.maxBlockSize = Math.max(this.blockSize, maxBlockSize);
+		this.targetLeaseMillis = targetLeaseMillis;
+	}
+
+	@Override
+	public long nextId() {
+		while (true) {
+			Block block = current;
+			if (block != null) {
+				long id = block.next.getAndIncrement();
+				if (id <= block.end) {
+					if (block.end - id <= block.size / PREFETCH_DIVISOR) {
+						prefetch(block);
+					}
+					return id;
+				}
+			}
+			switchBlock(block);
+		}
+	}
+
+	/**
+	 * 需要的id数量不小于号段大小时，直接租用一段连续的id
+	 */
+	@Override
+	public long[] nextIds(int count) {
+		long[] ids = new long[count];
+		if (count >= blockSize) {
+			Block block = lease(count);
+			for (int i = 0; i < count; i++) {
+				ids[i] = block.start + i;
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				ids[i] = nextId();
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * 当前号段用完，切换到下一个号段
+	 * @param exhausted 
+	 */
+	private synchronized void switchBlock(Block exhausted) {
+		if (current != exhausted) {
+			//其它线程已经切换
+			return;
+		}
+		Block block = null;
+		if (exhausted != null) {
+			adjustBlockSize(exhausted);
+			//没有预取时占位，之后不会再为用完的号段预取
+			FutureTask<Block> future = exhausted.nextBlock.compareAndSet(null, SWITCHED) ? null
+					: exhausted.nextBlock.get();
+			if (future != null) {
+				try {
+					//还没有开始执行(在队列中或者被丢弃)时由当前线程执行，已经开始执行时run()直接返回
+					future.run();
+					block = future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					logger.warn("prefetch id block failed, key:" + key, e.getCause());
+				}
+			}
+		}
+		if (block == null) {
+			block = lease(blockSize);
+		}
+		current = block;
+	}
+
+	/**
+	 * 后台预取下一个号段
+	 * @param block
+	 */
+	private void prefetch(Block block) {
+		if (block.nextBlock.get() != null) {
+			return;
+		}
+		final int size = blockSize;
+		FutureTask<Block> task = new FutureTask<Block>(new Callable<Block>() {
+			@Override
+			public Block call() throws Exception {
+				return lease(size);
+			}
+		});
+		//先发布再提交，切换号段时一定能看到正在预取的号段
+		if (block.nextBlock.compareAndSet(null, task)) {
+			try {
+				ExecutorRegistry.getExecutor(ExecutorRegistry.ID_PREFETCH).execute(task);
+			} catch (RejectedExecutionException e) {
+				//切换号段时由切换的线程执行
+			}
+		}
+	}
+
+	/**
+	 * 根据上一个号段的使用时间调整号段大小
+	 * @param exhausted
+	 */
+	private void adjustBlockSize(Block exhausted) {
+		long elapsed = System.currentTimeMillis() - exhausted.leaseTime;
+		if (elapsed < targetLeaseMillis / 2) {
+			blockSize = Math.min(blockSize * 2, maxBlockSize);
+		} else if (elapsed > targetLeaseMillis * 2) {
+			blockSize = Math.max(blockSize / 2, 1);
+		}
+	}
+
+	private Block lease(int size) {
+		long end = IncrIdAllocator.incrBy(redisOpsTemplate, key, size);
+		return new Block(end - size + 1, end, size);
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * 租用的号段 [start, end]
+	 */
+	static class Block {
+
+		final long start;
+
+		final long end;
+
+		final int size;
+
+		final long leaseTime = System.currentTimeMillis();
+
+		final AtomicLong next;
+
+		//预取的下一个号段，每个号段只预取一次
+		final AtomicReference<FutureTask<Block>> nextBlock = new AtomicReference<FutureTask<Block>>();
+
+		Block(long start, long end, int size) {
+			this.start = start;
+			this.end = end;
+			this.size = size;
+			this.next = new AtomicLong(start);
+		}
+
+	}
+
+}
@@ -0,0 +1,23 @@
+package cn.friday.base.service.global.redis.support.id;
+
+/**
+ * id生成器
+ * @author BravoZu
+ *
+ */
+public interface IdAllocator {
+
+	/**
+	 * 生成一个id
+	 * @return
+	 */
+	public long nextId();
+
+	/**
+	 * 生成多个id
+	 * @param count
+	 * @return 
+	 */
+	public long[] nextIds(int count);
+
+}
@@ -0,0 +1,72 @@
+package cn.friday.base.service.global.redis.support.id;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+
+import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
+
+/**
+ * 每次生成id都对计数器执行一次INCR，
+ * 生成的id严格连续
+ * @author BravoZu
+ *
+ */
+public class IncrIdAllocator implements IdAllocator {
+
+	/**
+	 * getSet命令之前允许incr插队的预留空间
+	 */
+	final static long OVERFLOW_RESERVE = 75807;
+
+	private final IRedisOpsTemplate redisOpsTemplate;
+
+	private final String key;
+
+	public IncrIdAllocator(IRedisOpsTemplate redisOpsTemplate, String key) {
+		this.redisOpsTemplate = redisOpsTemplate;
+		this.key = key;
+	}
+
+	@Override
+	public long nextId() {
+		return incrBy(redisOpsTemplate, key, 1);
+	}
+
+	@Override
+	public long[] nextIds(int count) {
+		long[] ids = new long[count];
+		if (count > 0) {
+			long id = incrBy(redisOpsTemplate, key, count) - count + 1;
+			for (int i = 0; i < count; i++) {
+				ids[i] = id + i;
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * 计数器增加delta
+	 * @param redisOpsTemplate
+	 * @param key
+	 * @param delta
+	 * @return 增加后的值
+	 */
+	static long incrBy(final IRedisOpsTemplate redisOpsTemplate, final String key, final long delta) {
+		return redisOpsTemplate.stringRedisTemplate().execute(new RedisCallback<Long>() {
+			@Override
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+
+				long id = delta == 1 ? connection.incr(key.getBytes()) : connection.incrBy(key.getBytes(), delta);
+
+				if ((id + OVERFLOW_RESERVE) >= Long.MAX_VALUE) {
+					// 避免溢出，重置，getSet命令之前允许incr插队，75807就是预留的插队空间
+					redisOpsTemplate.stringRedisTemplate().opsForValue().set(key, "0");
+				}
+
+				return id;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,196 @@
+package cn.friday.base.service.global.redis.support.key;
+
+import java.nio.charset.Charset;
+
+/**
+ * 预编译的key模板
+ * <p>
+ * 格式为 name:id1:id2，前缀的字节在创建时缓存，
+ * 直接从基本类型的id写出最终的byte[]或者String，不经过MessageFormat、装箱和Joiner。
+ * 没有id时使用emptyKey，用于兼容各个dao原有的key格式
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class KeyTemplate {
+
+	public final static char SEPARATOR = ':';
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final static byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(UTF_8);
+
+	private final String name;
+
+	private final String prefix;
+
+	private final byte[] prefixBytes;
+
+	private final String emptyKey;
+
+	private final byte[] emptyKeyBytes;
+
+	/**
+	 * 没有id时key为name
+	 * @param name 
+	 */
+	public KeyTemplate(String name) {
+		this(name, name);
+	}
+
+	/**
+	 * @param name
+	 * @param emptyKey 没有id时使用的key
+	 */
+	public KeyTemplate(String name, String emptyKey) {
+		this.name = name;
+		this.prefix = name + SEPARATOR;
+		this.prefixBytes = prefix.getBytes(UTF_8);
+		this.emptyKey = emptyKey;
+		this.emptyKeyBytes = emptyKey.getBytes(UTF_8);
+	}
+
+	public byte[] key(long id) {
+		byte[] key = new byte[prefixBytes.length + stringSize(id)];
+		System.arraycopy(prefixBytes, 0, key, 0, prefixBytes.length);
+		writeLong(id, key, key.length);
+		return key;
+	}
+
+	public byte[] key(int... ids) {
+		if (ids.length == 0) {
+			return emptyKeyBytes.clone();
+		}
+		int length = prefixBytes.length + ids.length - 1;
+		for (int id : ids) {
+			length += stringSize(id);
+		}
+		byte[] key = new byte[length];
+		System.arraycopy(prefixBytes, 0, key, 0, prefixBytes.length);
+		int end = length;
+		for (int i = ids.length - 1; i >= 0; i--) {
+			end = writeLong(ids[i], key, end);
+			if (i > 0) {
+				key[--end] = SEPARATOR;
+			}
+		}
+		return key;
+	}
+
+	public byte[] key(long... ids) {
+		if (ids.length == 0) {
+			return emptyKeyBytes.clone();
+		}
+		int length = prefixBytes.length + ids.length - 1;
+		for (long id : ids) {
+			length += stringSize(id);
+		}
+		byte[] key = new byte[length];
+		System.arraycopy(prefixBytes, 0, key, 0, prefixBytes.length);
+		int end = length;
+		for (int i = ids.length - 1; i >= 0; i--) {
+			end = writeLong(ids[i], key, end);
+			if (i > 0) {
+				key[--end] = SEPARATOR;
+			}
+		}
+		return key;
+	}
+
+	public String keyString(long id) {
+		return new StringBuilder(prefix.length() + 20).append(prefix).append(id).toString();
+	}
+
+	public String keyString(String id) {
+		return prefix + id;
+	}
+
+	public String keyString(int... ids) {
+		if (ids.length == 0) {
+			return emptyKey;
+		}
+		StringBuilder builder = new StringBuilder(prefix.length() + ids.length * 11).append(prefix);
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				builder.append(SEPARATOR);
+			}
+			builder.append(ids[i]);
+		}
+		return builder.toString();
+	}
+
+	public String keyString(long... ids) {
+		if (ids.length == 0) {
+			return emptyKey;
+		}
+		StringBuilder builder = new StringBuilder(prefix.length() + ids.length * 20).append(prefix);
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				builder.append(SEPARATOR);
+			}
+			builder.append(ids[i]);
+		}
+		return builder.toString();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 包含分隔符的前缀
+	 * @return 
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * 十进制表示的长度
+	 * @param value
+	 * @return 
+	 */
+	private static int stringSize(long value) {
+		if (value == Long.MIN_VALUE) {
+			return MIN_LONG.length;
+		}
+		int size = 1;
+		if (value < 0) {
+			size++;
+			value = -value;
+		}
+		while (value >= 10) {
+			value /= 10;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * 从end往前写入十进制的数字
+	 * @param value
+	 * @param buf
+	 * @param end
+	 * @return 写入的起始位置
+	 */
+	private static int writeLong(long value, byte[] buf, int end) {
+		if (value == Long.MIN_VALUE) {
+			int start = end - MIN_LONG.length;
+			System.arraycopy(MIN_LONG, 0, buf, start, MIN_LONG.length);
+			return start;
+		}
+		boolean negative = value < 0;
+		if (negative) {
+			value = -value;
+		}
+		do {
+			buf[--end] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while (value > 0);
+		if (negative) {
+			buf[--end] = '-';
+		}
+		return end;
+	}
+
+}
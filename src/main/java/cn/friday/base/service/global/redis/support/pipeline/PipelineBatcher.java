@@ -0,0 +1,222 @@
+package cn.friday.base.service.global.redis.support.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisCallback;
+
+import com.google.common.base.Preconditions;
+
+import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
+import cn.friday.base.service.global.redis.support.executor.ExecutorRegistry;
+
+/**
+ * 自动合并命令的pipeline分发器
+ * <p>
+ * 各个线程提交的命令先进入队列，等待一个很短的时间窗口或者积累到一定数量后，
+ * 合并成一个pipeline发送，返回值按照提交顺序分发到每个命令的future中。
+ * 单个命令出错只影响该命令，连接出错时整批命令都以异常结束
+ * </p>
+ * @author BravoZu
+ *
+ */
+public class PipelineBatcher {
+
+	private static final Logger logger = Logger.getLogger(PipelineBatcher.class);
+
+	/**
+	 * 默认合并的时间窗口(微秒)
+	 */
+	private final static long DEFAULT_WINDOW_MICROS = 2000;
+
+	/**
+	 * 默认一个pipeline最多包含的命令数
+	 */
+	private final static int DEFAULT_MAX_BATCH_SIZE = 256;
+
+	private final IRedisOpsTemplate redisOpsTemplate;
+
+	private final long windowMicros;
+
+	private final int maxBatchSize;
+
+	private final Queue<PipelineCommand<?>> pending = new ConcurrentLinkedQueue<PipelineCommand<?>>();
+
+	private final AtomicInteger pendingSize = new AtomicInteger();
+
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			scheduled.set(false);
+			flush();
+		}
+	};
+
+	//在共用的调度线程中执行，不能在这里发送命令，线程池满时让积压的命令以异常结束
+	private final Runnable dispatchTask = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				ExecutorRegistry.getExecutor(ExecutorRegistry.PIPELINE).execute(flushTask);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				fail(e);
+			}
+		}
+	};
+
+	public PipelineBatcher(IRedisOpsTemplate redisOpsTemplate) {
+		this(redisOpsTemplate, DEFAULT_WINDOW_MICROS, DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	public PipelineBatcher(IRedisOpsTemplate redisOpsTemplate, long windowMicros, int maxBatchSize) {
+		this.redisOpsTemplate = redisOpsTemplate;
+		this.windowMicros = windowMicros;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * 提交命令，命令会在下一个pipeline中执行
+	 * @param command
+	 * @return 
+	 */
+	public <R> PipelineCommand<R> submit(PipelineCommand<R> command) {
+		Preconditions.checkArgument(command.replies() > 0, "不能合并没有返回值的命令");
+		pending.offer(command);
+		if (pendingSize.incrementAndGet() >= maxBatchSize) {
+			try {
+				ExecutorRegistry.getExecutor(ExecutorRegistry.PIPELINE).execute(new Runnable() {
+					@Override
+					public void run() {
+						flush();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				//线程池满时由提交的线程发送
+				flush();
+			}
+		} else if (scheduled.compareAndSet(false, true)) {
+			ExecutorRegistry.getScheduler().schedule(dispatchTask, windowMicros, TimeUnit.MICROSECONDS);
+		}
+		return command;
+	}
+
+	/**
+	 * 发送队列中所有的命令
+	 */
+	public void flush() {
+		List<PipelineCommand<?>> batch = drain();
+		while (!batch.isEmpty()) {
+			execute(batch);
+			batch = drain();
+		}
+	}
+
+	/**
+	 * 队列中所有的命令以异常结束
+	 * @param e 
+	 */
+	private void fail(Exception e) {
+		List<PipelineCommand<?>> batch = drain();
+		while (!batch.isEmpty()) {
+			logger.error("pipeline executor rejected, size:" + batch.size(), e);
+			for (PipelineCommand<?> command : batch) {
+				command.getFuture().completeExceptionally(e);
+			}
+			batch = drain();
+		}
+	}
+
+	private List<PipelineCommand<?>> drain() {
+		List<PipelineCommand<?>> batch = new ArrayList<PipelineCommand<?>>();
+		PipelineCommand<?> command;
+		while (batch.size() < maxBatchSize && (command = pending.poll()) != null) {
+			pendingSize.decrementAndGet();
+			batch.add(command);
+		}
+		return batch;
+	}
+
+	private void execute(final List<PipelineCommand<?>> batch) {
+		List<Object> replies;
+		try {
+			replies = redisOpsTemplate.stringRedisTemplate().execute(new RedisCallback<List<Object>>() {
+				@Override
+				public List<Object> doInRedis(RedisConnection connection) throws DataAccessException {
+					connection.openPipeline();
+					boolean closed = false;
+					try {
+						for (PipelineCommand<?> command : batch) {
+							command.write(connection);
+						}
+						closed = true;
+						return connection.closePipeline();
+					} catch (RedisPipelineException e) {
+						//单个命令出错时，其它命令的结果仍然有效
+						return e.getPipelineResult();
+					} finally {
+						if (!closed) {
+							connection.closePipeline();
+						}
+					}
+				}
+			});
+		} catch (Exception e) {
+			logger.error("execute pipeline failed, size:" + batch.size(), e);
+			for (PipelineCommand<?> command : batch) {
+				command.getFuture().completeExceptionally(e);
+			}
+			return;
+		}
+		dispatch(batch, replies);
+	}
+
+	private void dispatch(List<PipelineCommand<?>> batch, List<Object> replies) {
+		int index = 0;
+		for (PipelineCommand<?> command : batch) {
+			int count = command.replies();
+			if (index + count > replies.size()) {
+				command.getFuture().completeExceptionally(
+						new IllegalStateException("pipeline replies mismatch, expected:" + (index + count)
+								+ ", actual:" + replies.size()));
+				continue;
+			}
+			List<Object> own = replies.subList(index, index + count);
+			index += count;
+			complete(command, count == 1 ? own.get(0) : own);
+		}
+	}
+
+	private <R> void complete(PipelineCommand<R> command, Object reply) {
+		if (reply instanceof Exception) {
+			command.getFuture().completeExceptionally((Exception) reply);
+			return;
+		}
+		if (reply instanceof List) {
+			for (Object r : (List<?>) reply) {
+				if (r instanceof Exception) {
+					command.getFuture().completeExceptionally((Exception) r);
+					return;
+				}
+			}
+		}
+		try {
+			command.getFuture().complete(command.convert(reply));
+		} catch (Exception e) {
+			command.getFuture().completeExceptionally(e);
+		}
+	}
+
+}
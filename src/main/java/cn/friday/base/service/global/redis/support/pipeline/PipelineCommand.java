@@ -0,0 +1,47 @@
+package cn.friday.base.service.global.redis.support.pipeline;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+/**
+ * 可以合并到pipeline中执行的命令
+ * <p>
+ * 命令在pipeline中写入后，按照写入顺序取回{@link #replies()}个返回值。
+ * 状态类的命令(如HMSET)成功时不会出现在pipeline结果中，失败时却会占用一个结果，
+ * 无法和其它命令的结果对齐，所以不能合并发送，需要改用一定有返回值的命令(如lua脚本)
+ * </p>
+ * @author BravoZu
+ *
+ * @param <R> 返回值的类型
+ */
+public abstract class PipelineCommand<R> {
+
+	private final CompletableFuture<R> future = new CompletableFuture<R>();
+
+	/**
+	 * 向pipeline中写入命令
+	 * @param connection 
+	 */
+	protected abstract void write(RedisConnection connection);
+
+	/**
+	 * 把pipeline的原始返回值转换成结果
+	 * @param reply 只有一个返回值时为该返回值，多个时为List
+	 * @return 
+	 */
+	protected abstract R convert(Object reply);
+
+	/**
+	 * 在pipeline结果中占用的返回值个数，至少为1
+	 * @return 
+	 */
+	protected int replies() {
+		return 1;
+	}
+
+	public CompletableFuture<R> getFuture() {
+		return future;
+	}
+
+}
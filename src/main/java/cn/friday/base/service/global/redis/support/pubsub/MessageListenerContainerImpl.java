@@ -1,9 +1,12 @@
 package cn.friday.base.service.global.redis.support.pubsub;
 
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
+import cn.friday.base.service.global.redis.support.cache.CacheInvalidationReceiver;
+
 
 /**
  * 发布者，订阅者容器
@@ -22,5 +25,13 @@ public class MessageListenerContainerImpl extends RedisMessageListenerContainer{
 	public void addMessageListener(AbstractMessageReceiver<?> receiver) {
 		super.addMessageListener(receiver, new PatternTopic(receiver.getChannel()));
 	}
+
+	/**
+	 * 订阅本地缓存失效消息
+	 * @param receiver
+	 */
+	public void addMessageListener(CacheInvalidationReceiver receiver) {
+		super.addMessageListener(receiver, new ChannelTopic(receiver.getChannel()));
+	}
 	
 }
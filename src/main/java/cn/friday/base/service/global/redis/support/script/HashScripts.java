@@ -0,0 +1,58 @@
+package cn.friday.base.service.global.redis.support.script;
+
+/**
+ * hash相关的lua脚本
+ * @author BravoZu
+ *
+ */
+public final class HashScripts {
+
+	/**
+	 * 写入hash并设置过期时间
+	 * KEYS[1]:key
+	 * ARGV[1]:过期时间(秒)，小于等于0不设置
+	 * ARGV[2...]:field value
+	 */
+	public final static LuaScript<Long> SAVE_WITH_EXPIRE = new LuaScript<Long>(
+			"redis.call('HMSET', KEYS[1], unpack(ARGV, 2)) "
+					+ "if tonumber(ARGV[1]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end "
+					+ "return 1",
+			Long.class);
+
+	/**
+	 * key存在时才写入hash
+	 * KEYS[1]:key
+	 * ARGV:field value
+	 * 返回1表示已写入，0表示key不存在
+	 */
+	public final static LuaScript<Long> UPDATE_IF_EXISTS = new LuaScript<Long>(
+			"if redis.call('EXISTS', KEYS[1]) == 1 then "
+					+ "redis.call('HMSET', KEYS[1], unpack(ARGV)) return 1 end "
+					+ "return 0",
+			Long.class);
+
+	/**
+	 * 写回迁移后的属性，key存在时才执行
+	 * KEYS[1]:key
+	 * ARGV[1]:版本号属性
+	 * ARGV[2]:版本号，为空时不写版本号
+	 * ARGV[3...]:每4个一组，原属性 原值 新属性 新值，
+	 * 原属性的值没有被修改过才写入，属性名改变时删除原属性，新属性已经存在时保留新属性的值
+	 * 返回1表示已写入，0表示key不存在
+	 */
+	public final static LuaScript<Long> MIGRATE_IF_EXISTS = new LuaScript<Long>(
+			"if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+					+ "for i = 3, #ARGV, 4 do "
+					+ "if redis.call('HGET', KEYS[1], ARGV[i]) == ARGV[i + 1] then "
+					+ "if ARGV[i] == ARGV[i + 2] then redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 3]) "
+					+ "else redis.call('HSETNX', KEYS[1], ARGV[i + 2], ARGV[i + 3]) redis.call('HDEL', KEYS[1], ARGV[i]) end "
+					+ "end "
+					+ "end "
+					+ "if ARGV[2] ~= '' then redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) end "
+					+ "return 1",
+			Long.class);
+
+	private HashScripts() {
+	}
+
+}
@@ -0,0 +1,163 @@
+package cn.friday.base.service.global.redis.support.script;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import cn.friday.base.service.global.redis.util.AsciiCodec;
+
+/**
+ * lua脚本
+ * <p>
+ * 每个连接工厂只执行一次SCRIPT LOAD，之后都通过EVALSHA执行，
+ * redis返回NOSCRIPT时(重启或执行了SCRIPT FLUSH)退回到EVAL并重新加载
+ * </p>
+ * @author BravoZu
+ *
+ * @param <T>
+ */
+public class LuaScript<T> {
+
+	private final static String EVALSHA = "EVALSHA";
+
+	private final DefaultRedisScript<T> script;
+
+	private final ReturnType returnType;
+
+	private final byte[] scriptBytes;
+
+	private final byte[] sha1Bytes;
+
+	//已经加载过脚本的连接工厂
+	private final Set<RedisConnectionFactory> loadedFactories = Collections
+			.newSetFromMap(new ConcurrentHashMap<RedisConnectionFactory, Boolean>());
+
+	public LuaScript(String scriptText, Class<T> resultType) {
+		this.script = new DefaultRedisScript<T>(scriptText, resultType);
+		this.returnType = ReturnType.fromJavaType(resultType);
+		this.scriptBytes = scriptText.getBytes();
+		this.sha1Bytes = AsciiCodec.toBytes(script.getSha1());
+	}
+
+	/**
+	 * 执行脚本
+	 * @param template
+	 * @param keys
+	 * @param args
+	 * @return
+	 */
+	public T execute(StringRedisTemplate template, List<String> keys, List<String> args) {
+		return execute(template, keys.size(), keysAndArgs(template.getStringSerializer(), keys, args));
+	}
+
+	/**
+	 * 执行脚本，key和参数已经是字节
+	 * @param template
+	 * @param numKeys
+	 * @param keysAndArgs
+	 * @return
+	 */
+	public T execute(StringRedisTemplate template, final int numKeys, final byte[]... keysAndArgs) {
+		load(template);
+		return template.execute(new RedisCallback<T>() {
+			@Override
+			public T doInRedis(RedisConnection connection) throws DataAccessException {
+				try {
+					return connection.evalSha(script.getSha1(), returnType, numKeys, keysAndArgs);
+				} catch (RuntimeException e) {
+					if (!isNoScriptError(e)) {
+						throw e;
+					}
+					return connection.eval(scriptBytes, returnType, numKeys, keysAndArgs);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 在pipeline中执行脚本，
+	 * 调用之前需要先{@link #load(StringRedisTemplate)}。
+	 * jedis的连接在pipeline中不支持evalSha，通过execute发送原始的EVALSHA命令，
+	 * 返回值为redis的原始回复(整数为Long)，脚本不存在时该命令的结果为NOSCRIPT异常
+	 * @param connection
+	 * @param numKeys
+	 * @param keysAndArgs
+	 */
+	public void evalSha(RedisConnection connection, int numKeys, byte[]... keysAndArgs) {
+		byte[][] args = new byte[keysAndArgs.length + 2][];
+		args[0] = sha1Bytes;
+		args[1] = AsciiCodec.formatLong(numKeys);
+		System.arraycopy(keysAndArgs, 0, args, 2, keysAndArgs.length);
+		connection.execute(EVALSHA, args);
+	}
+
+	/**
+	 * 加载脚本，每个连接工厂只加载一次
+	 * @param template
+	 */
+	public void load(StringRedisTemplate template) {
+		RedisConnectionFactory factory = template.getConnectionFactory();
+		if (!loadedFactories.contains(factory)) {
+			template.execute(new RedisCallback<String>() {
+				@Override
+				public String doInRedis(RedisConnection connection) throws DataAccessException {
+					return connection.scriptLoad(scriptBytes);
+				}
+			});
+			loadedFactories.add(factory);
+		}
+	}
+
+	/**
+	 * 重新加载脚本
+	 * @param template
+	 */
+	public void reload(StringRedisTemplate template) {
+		loadedFactories.remove(template.getConnectionFactory());
+		load(template);
+	}
+
+	public String getSha1() {
+		return script.getSha1();
+	}
+
+	/**
+	 * 是否为脚本不存在的异常
+	 * @param e
+	 * @return
+	 */
+	public static boolean isNoScriptError(Throwable e) {
+		Throwable current = e;
+		while (current != null) {
+			String message = current.getMessage();
+			if (message != null && message.contains("NOSCRIPT")) {
+				return true;
+			}
+			current = current.getCause();
+		}
+		return false;
+	}
+
+	private static byte[][] keysAndArgs(RedisSerializer<String> serializer, List<String> keys, List<String> args) {
+		byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+		int i = 0;
+		for (String key : keys) {
+			keysAndArgs[i++] = serializer.serialize(key);
+		}
+		for (String arg : args) {
+			keysAndArgs[i++] = serializer.serialize(arg);
+		}
+		return keysAndArgs;
+	}
+
+}
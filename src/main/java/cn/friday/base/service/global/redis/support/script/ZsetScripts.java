@@ -0,0 +1,27 @@
+package cn.friday.base.service.global.redis.support.script;
+
+/**
+ * zset相关的lua脚本
+ * @author BravoZu
+ *
+ */
+public final class ZsetScripts {
+
+	/**
+	 * 增加紧凑格式成员的分值，同时把还没有迁移的文本格式成员的分值合并过来
+	 * KEYS[1]:key
+	 * ARGV[1]:增量
+	 * ARGV[2]:紧凑格式的成员
+	 * ARGV[3]:文本格式的成员
+	 * 返回增加后的分值，分值直接交给ZINCRBY累加，不在lua中转换成数字，避免丢失精度
+	 */
+	public final static LuaScript<byte[]> INCR_SCORE_MIGRATE = new LuaScript<byte[]>(
+			"local s = redis.call('ZSCORE', KEYS[1], ARGV[3]) "
+					+ "if s then redis.call('ZREM', KEYS[1], ARGV[3]) redis.call('ZINCRBY', KEYS[1], s, ARGV[2]) end "
+					+ "return redis.call('ZINCRBY', KEYS[1], ARGV[1], ARGV[2])",
+			byte[].class);
+
+	private ZsetScripts() {
+	}
+
+}
@@ -1,5 +1,7 @@
 package cn.friday.base.service.global.redis.syncer;
 
+import java.util.List;
+
 /**
  * 
  * <b><code>DatabaseSyncer</code></b>
@@ -9,4 +11,25 @@ package cn.friday.base.service.global.redis.syncer;
  */
 public interface DatabaseSyncer<T> extends Syncer<T> {
 
+	/**
+	 * 批量同步，默认逐条调用{@link #excute(Object)}，
+	 * 可以覆盖成批量写库
+	 * @param list 
+	 */
+	public default void excuteAll(List<T> list) {
+		for (T t : list) {
+			excute(t);
+		}
+	}
+
+	/**
+	 * 合并写时的批次，批次相同的同步器提交的实体通过其中最后提交的同步器一次写入。
+	 * 默认是同步器本身，只有同一个同步器提交的实体才会一起写入；
+	 * 每次保存都创建新的同步器并且同步器没有保存调用时的状态时，可以返回相同的值合并成一批
+	 * @return 
+	 */
+	public default Object batchKey() {
+		return this;
+	}
+
 }
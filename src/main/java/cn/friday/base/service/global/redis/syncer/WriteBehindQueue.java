@@ -0,0 +1,284 @@
+package cn.friday.base.service.global.redis.syncer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import cn.friday.base.service.global.redis.support.executor.ExecutorRegistry;
+
+/**
+ * 合并写的延迟同步队列
+ * <p>
+ * 每个dao一个队列，同一个id在一个时间窗口内只保留最新的实体和同步器，窗口结束后批量同步。
+ * 同步器可能保存了调用时的状态，所以按照{@link DatabaseSyncer#batchKey()}分组(默认是同步器本身)，
+ * 同一批的实体使用其中最后提交的同步器通过{@link DatabaseSyncer#excuteAll(List)}一次写入，
+ * 其它同步器用各自的同步器逐条执行。积压超过上限时由提交的线程直接执行同步，限制提交的速度
+ * </p>
+ * @author BravoZu
+ *
+ * @param <T>
+ */
+public class WriteBehindQueue<T> {
+
+	private static final Logger logger = Logger.getLogger(WriteBehindQueue.class);
+
+	/**
+	 * 默认合并的时间窗口(毫秒)
+	 */
+	public final static long DEFAULT_WINDOW_MILLIS = 1000;
+
+	/**
+	 * 默认最大积压数
+	 */
+	public final static int DEFAULT_MAX_BACKLOG = 10000;
+
+	/**
+	 * 一次批量同步的最大条数
+	 */
+	private final static int MAX_BATCH_SIZE = 500;
+
+	private final String name;
+
+	private final long windowMillis;
+
+	private final int maxBacklog;
+
+	private final ConcurrentMap<Long, Pending<T>> pending = new ConcurrentHashMap<Long, Pending<T>>();
+
+	private final AtomicInteger backlog = new AtomicInteger();
+
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	//统计
+	private final AtomicLong submitted = new AtomicLong();
+
+	private final AtomicLong flushed = new AtomicLong();
+
+	private final AtomicLong flushCount = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private volatile long lastFlushMillis;
+
+	private volatile long maxFlushMillis;
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			scheduled.set(false);
+			flush();
+		}
+	};
+
+	private final Runnable dispatchTask = new Runnable() {
+		@Override
+		public void run() {
+			ExecutorRegistry.getExecutor(ExecutorRegistry.WRITE_BEHIND).execute(flushTask);
+		}
+	};
+
+	public WriteBehindQueue(String name) {
+		this(name, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BACKLOG);
+	}
+
+	public WriteBehindQueue(String name, long windowMillis, int maxBacklog) {
+		this.name = name;
+		this.windowMillis = windowMillis;
+		this.maxBacklog = maxBacklog;
+		ExecutorRegistry.addShutdownFlush("redis-write-behind-" + name, new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		});
+	}
+
+	/**
+	 * 提交需要同步的实体，窗口内同一个id的旧版本和旧的同步器会被覆盖
+	 * @param id
+	 * @param t
+	 * @param syncer 
+	 */
+	public void submit(long id, T t, Syncer<T> syncer) {
+		long sequence = submitted.incrementAndGet();
+		if (pending.put(id, new Pending<T>(t, syncer, sequence)) == null) {
+			if (backlog.incrementAndGet() >= maxBacklog) {
+				//积压过多，由提交的线程同步
+				flush();
+				return;
+			}
+		}
+		if (scheduled.compareAndSet(false, true)) {
+			ExecutorRegistry.getScheduler().schedule(dispatchTask, windowMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 同步所有积压的实体
+	 */
+	public void flush() {
+		flushLock.lock();
+		try {
+			long start = System.currentTimeMillis();
+			Map<Object, List<Pending<T>>> groups = drain();
+			if (groups.isEmpty()) {
+				return;
+			}
+			for (List<Pending<T>> group : groups.values()) {
+				sync(group);
+			}
+			long cost = System.currentTimeMillis() - start;
+			lastFlushMillis = cost;
+			if (cost > maxFlushMillis) {
+				maxFlushMillis = cost;
+			}
+			flushCount.incrementAndGet();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * 取出所有积压的实体，按照同步器的批次分组
+	 * @return
+	 */
+	private Map<Object, List<Pending<T>>> drain() {
+		Map<Object, List<Pending<T>>> groups = new LinkedHashMap<Object, List<Pending<T>>>();
+		Iterator<Map.Entry<Long, Pending<T>>> iterator = pending.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Long, Pending<T>> entry = iterator.next();
+			//提交了更新的版本时保留到下一次
+			if (!pending.remove(entry.getKey(), entry.getValue())) {
+				continue;
+			}
+			backlog.decrementAndGet();
+			Pending<T> value = entry.getValue();
+			Object batchKey = value.syncer instanceof DatabaseSyncer ? ((DatabaseSyncer<T>) value.syncer).batchKey()
+					: value.syncer;
+			List<Pending<T>> list = groups.get(batchKey);
+			if (list == null) {
+				list = new ArrayList<Pending<T>>();
+				groups.put(batchKey, list);
+			}
+			list.add(value);
+		}
+		return groups;
+	}
+
+	private void sync(List<Pending<T>> group) {
+		if (group.get(0).syncer instanceof DatabaseSyncer) {
+			//同一批的同步器可以互相替代，使用最后提交的同步器批量写入
+			Pending<T> latest = group.get(0);
+			List<T> list = new ArrayList<T>(group.size());
+			for (Pending<T> p : group) {
+				list.add(p.entity);
+				if (p.sequence > latest.sequence) {
+					latest = p;
+				}
+			}
+			DatabaseSyncer<T> databaseSyncer = (DatabaseSyncer<T>) latest.syncer;
+			for (int from = 0; from < list.size(); from += MAX_BATCH_SIZE) {
+				List<T> batch = list.subList(from, Math.min(from + MAX_BATCH_SIZE, list.size()));
+				try {
+					databaseSyncer.excuteAll(batch);
+					flushed.addAndGet(batch.size());
+				} catch (Exception e) {
+					failed.addAndGet(batch.size());
+					logger.error("write behind sync failed, name:" + name + ", size:" + batch.size(), e);
+				}
+			}
+		} else {
+			for (Pending<T> p : group) {
+				try {
+					p.syncer.excute(p.entity);
+					flushed.incrementAndGet();
+				} catch (Exception e) {
+					failed.incrementAndGet();
+					logger.error("write behind sync failed, name:" + name, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 当前积压的条数
+	 * @return 
+	 */
+	public int getBacklog() {
+		return backlog.get();
+	}
+
+	/**
+	 * 提交的总条数
+	 * @return 
+	 */
+	public long getSubmitted() {
+		return submitted.get();
+	}
+
+	/**
+	 * 合并后实际同步的总条数
+	 * @return 
+	 */
+	public long getFlushed() {
+		return flushed.get();
+	}
+
+	/**
+	 * 同步失败的总条数
+	 * @return 
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	public long getLastFlushMillis() {
+		return lastFlushMillis;
+	}
+
+	public long getMaxFlushMillis() {
+		return maxFlushMillis;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 等待同步的实体和提交时的同步器，按引用比较
+	 */
+	private static class Pending<T> {
+
+		private final T entity;
+
+		private final Syncer<T> syncer;
+
+		//提交的顺序，用于选择最后提交的同步器
+		private final long sequence;
+
+		Pending(T entity, Syncer<T> syncer, long sequence) {
+			this.entity = entity;
+			this.syncer = syncer;
+			this.sequence = sequence;
+		}
+
+	}
+
+}
@@ -0,0 +1,189 @@
+package cn.friday.base.service.global.redis.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接从redis返回的ASCII字节解析数字，不创建中间的String
+ * <p>
+ * 格式不合法时和Long.parseLong、Double.parseDouble一样抛出NumberFormatException。
+ * 小数只处理redis常见的格式(不超过2^53的有效数字，没有指数)，其它情况交给Double.parseDouble，
+ * 两者的结果完全一致，另外redis返回的inf/-inf解析为无穷大
+ * </p>
+ * @author BravoZu
+ *
+ */
+public final class AsciiCodec {
+
+	//可以精确表示的10的幂
+	private final static double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	//超过这个值的有效数字无法保证精确转换
+	private final static long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private final static byte[] POSITIVE_INF = "+inf".getBytes(StandardCharsets.US_ASCII);
+
+	private final static byte[] NEGATIVE_INF = "-inf".getBytes(StandardCharsets.US_ASCII);
+
+	private AsciiCodec() {
+	}
+
+	public static long parseLong(byte[] bytes) {
+		if (bytes == null || bytes.length == 0) {
+			throw new NumberFormatException("empty");
+		}
+		int i = 0;
+		boolean negative = false;
+		byte first = bytes[0];
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			i++;
+			if (bytes.length == 1) {
+				throw invalid(bytes);
+			}
+		}
+		//按负数累加，可以表示Long.MIN_VALUE
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multmin = limit / 10;
+		long result = 0;
+		for (; i < bytes.length; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9 || result < multmin) {
+				throw invalid(bytes);
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				throw invalid(bytes);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	public static int parseInt(byte[] bytes) {
+		long value = parseLong(bytes);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw invalid(bytes);
+		}
+		return (int) value;
+	}
+
+	public static double parseDouble(byte[] bytes) {
+		if (bytes == null || bytes.length == 0) {
+			throw new NumberFormatException("empty");
+		}
+		int i = 0;
+		boolean negative = false;
+		byte first = bytes[0];
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fraction = -1;
+		for (; i < bytes.length; i++) {
+			byte b = bytes[i];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (fraction >= 0) {
+					fraction++;
+				}
+				if (mantissa > MAX_EXACT_MANTISSA) {
+					return slowParseDouble(bytes);
+				}
+			} else if (b == '.' && fraction < 0) {
+				fraction = 0;
+			} else {
+				return slowParseDouble(bytes);
+			}
+		}
+		if (digits == 0) {
+			return slowParseDouble(bytes);
+		}
+		double value = mantissa;
+		if (fraction > 0) {
+			if (fraction >= POWERS_OF_TEN.length) {
+				return slowParseDouble(bytes);
+			}
+			//有效数字和10的幂都可以精确表示时，一次除法的结果是正确舍入的
+			value = value / POWERS_OF_TEN[fraction];
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * 格式化分值，无穷大使用redis的+inf/-inf
+	 * @param value
+	 * @return
+	 */
+	public static byte[] formatDouble(double value) {
+		if (value == Double.POSITIVE_INFINITY) {
+			return POSITIVE_INF;
+		}
+		if (value == Double.NEGATIVE_INFINITY) {
+			return NEGATIVE_INF;
+		}
+		return toBytes(Double.toString(value));
+	}
+
+	public static byte[] formatLong(long value) {
+		return toBytes(Long.toString(value));
+	}
+
+	/**
+	 * 字节内容是否和ASCII字符串相同
+	 * @param bytes
+	 * @param str
+	 * @return
+	 */
+	public static boolean equals(byte[] bytes, String str) {
+		if (bytes == null || bytes.length != str.length()) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != str.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 和ASCII字符串的hashCode一致
+	 * @param bytes
+	 * @return
+	 */
+	public static int hashCode(byte[] bytes) {
+		int hash = 0;
+		for (byte b : bytes) {
+			hash = 31 * hash + (b & 0xFF);
+		}
+		return hash;
+	}
+
+	public static byte[] toBytes(String str) {
+		return str.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	public static String toString(byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static double slowParseDouble(byte[] bytes) {
+		String str = new String(bytes, StandardCharsets.US_ASCII);
+		//redis返回的无穷大
+		if ("inf".equals(str) || "+inf".equals(str)) {
+			return Double.POSITIVE_INFINITY;
+		} else if ("-inf".equals(str)) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return Double.parseDouble(str);
+	}
+
+	private static NumberFormatException invalid(byte[] bytes) {
+		return new NumberFormatException("For input string: \"" + new String(bytes, StandardCharsets.UTF_8) + "\"");
+	}
+
+}
@@ -0,0 +1,227 @@
+package cn.friday.base.service.global.redis.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+/**
+ * 线程安全的日期编解码
+ * <p>
+ * 手写解析yyyy-MM-dd HH:mm:ss格式，不使用正则和SimpleDateFormat，
+ * 可以接受的格式和原来DateRedisConvert的正则一致：
+ * 年4位，其它1到2位，日期和时间之间以空格开始，可以有多个空白字符。
+ * 字段越界时和SimpleDateFormat一样顺延(比如13月为下一年1月)。
+ * 另外提供毫秒数格式，解析更快，读取时两种格式都支持
+ * </p>
+ * @author BravoZu
+ *
+ */
+public final class DateCodec {
+
+	private DateCodec() {
+	}
+
+	/**
+	 * 格式化成yyyy-MM-dd HH:mm:ss
+	 * @param date
+	 * @return
+	 */
+	public static String format(Date date) {
+		return format(date.getTime());
+	}
+
+	public static String format(long millis) {
+		ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault());
+		int year = time.getYear();
+		if (year < 0 || year > 9999) {
+			StringBuilder builder = new StringBuilder(24);
+			builder.append(year).append('-');
+			return appendTime(builder, time).toString();
+		}
+		char[] chars = new char[19];
+		chars[0] = (char) ('0' + year / 1000);
+		chars[1] = (char) ('0' + year / 100 % 10);
+		chars[2] = (char) ('0' + year / 10 % 10);
+		chars[3] = (char) ('0' + year % 10);
+		chars[4] = '-';
+		two(chars, 5, time.getMonthValue());
+		chars[7] = '-';
+		two(chars, 8, time.getDayOfMonth());
+		chars[10] = ' ';
+		two(chars, 11, time.getHour());
+		chars[13] = ':';
+		two(chars, 14, time.getMinute());
+		chars[16] = ':';
+		two(chars, 17, time.getSecond());
+		return new String(chars);
+	}
+
+	/**
+	 * 毫秒数格式
+	 * @param date
+	 * @return
+	 */
+	public static String formatMillis(Date date) {
+		return Long.toString(date.getTime());
+	}
+
+	/**
+	 * 解析yyyy-MM-dd HH:mm:ss，格式不对返回null
+	 * @param str
+	 * @return
+	 */
+	public static Date parse(String str) {
+		long millis = parseMillis(str);
+		return millis == Long.MIN_VALUE ? null : new Date(millis);
+	}
+
+	/**
+	 * 两种格式都可以读取，纯数字按照毫秒数处理，格式不对返回null
+	 * @param str
+	 * @return
+	 */
+	public static Date parseAny(String str) {
+		if (isDigits(str, 0)) {
+			try {
+				return new Date(Long.parseLong(str));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return parse(str);
+	}
+
+	/**
+	 * 是否为yyyy-MM-dd HH:mm:ss格式
+	 * @param str
+	 * @return
+	 */
+	public static boolean isDateTime(String str) {
+		return parseFields(str) != null;
+	}
+
+	/**
+	 * 是否为以14开头的13位毫秒数，兼容旧数据里addTime保存的时间戳
+	 * @param str
+	 * @return
+	 */
+	public static boolean isLegacyTimestamp(String str) {
+		return str != null && str.length() == 13 && str.startsWith("14") && isDigits(str, 2);
+	}
+
+	/**
+	 * 全部为数字
+	 * @param str
+	 * @param from
+	 * @return
+	 */
+	public static boolean isDigits(String str, int from) {
+		if (str == null || str.length() == 0) {
+			return false;
+		}
+		for (int i = from; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long parseMillis(String str) {
+		int[] fields = parseFields(str);
+		if (fields == null) {
+			return Long.MIN_VALUE;
+		}
+		//和SimpleDateFormat的宽松模式一样，越界的字段顺延
+		LocalDateTime time = LocalDateTime.of(fields[0], 1, 1, 0, 0).plusMonths(fields[1] - 1)
+				.plusDays(fields[2] - 1).plusHours(fields[3]).plusMinutes(fields[4]).plusSeconds(fields[5]);
+		return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * 按照^\d{4}-\d{1,2}-\d{1,2}\s+\d{1,2}:\d{1,2}:\d{1,2}$拆分字段
+	 * @param str
+	 * @return
+	 */
+	private static int[] parseFields(String str) {
+		if (str == null) {
+			return null;
+		}
+		int length = str.length();
+		if (length < 14) {
+			return null;
+		}
+		int[] fields = new int[6];
+		int pos = 0;
+		for (int i = 0; i < 4; i++) {
+			int digit = digit(str.charAt(pos++));
+			if (digit < 0) {
+				return null;
+			}
+			fields[0] = fields[0] * 10 + digit;
+		}
+		for (int field = 1; field < 6; field++) {
+			if (field == 3) {
+				//SimpleDateFormat要求第一个是空格，之后的空白字符跳过
+				if (pos >= length || str.charAt(pos++) != ' ') {
+					return null;
+				}
+				while (pos < length && isWhitespace(str.charAt(pos))) {
+					pos++;
+				}
+			} else {
+				char separator = field < 3 ? '-' : ':';
+				if (pos >= length || str.charAt(pos++) != separator) {
+					return null;
+				}
+			}
+			int count = 0;
+			while (pos < length && count < 2) {
+				int digit = digit(str.charAt(pos));
+				if (digit < 0) {
+					break;
+				}
+				fields[field] = fields[field] * 10 + digit;
+				pos++;
+				count++;
+			}
+			if (count == 0) {
+				return null;
+			}
+		}
+		return pos == length ? fields : null;
+	}
+
+	private static int digit(char c) {
+		return c >= '0' && c <= '9' ? c - '0' : -1;
+	}
+
+	//和正则的\s一致
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static void two(char[] chars, int offset, int value) {
+		chars[offset] = (char) ('0' + value / 10);
+		chars[offset + 1] = (char) ('0' + value % 10);
+	}
+
+	private static StringBuilder appendTime(StringBuilder builder, ZonedDateTime time) {
+		pad(builder, time.getMonthValue()).append('-');
+		pad(builder, time.getDayOfMonth()).append(' ');
+		pad(builder, time.getHour()).append(':');
+		pad(builder, time.getMinute()).append(':');
+		return pad(builder, time.getSecond());
+	}
+
+	private static StringBuilder pad(StringBuilder builder, int value) {
+		if (value < 10) {
+			builder.append('0');
+		}
+		return builder.append(value);
+	}
+
+}
@@ -18,12 +18,21 @@ public class DateUtil {
 	//默认的日期格式化
 	private static final String DEFAULT_DATETIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
 
-	//默认日期格式
-	private static final SimpleDateFormat datetimeSdf = new SimpleDateFormat(DEFAULT_DATETIME_FORMAT);
+	//SimpleDateFormat不是线程安全的，只在DateCodec无法解析时使用
+	private static final ThreadLocal<SimpleDateFormat> datetimeSdf = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat(DEFAULT_DATETIME_FORMAT);
+		}
+	};
 
 	public static Date changStringToDate(String str) {
+		Date date = DateCodec.parse(str);
+		if (date != null) {
+			return date;
+		}
 		try {
-			return datetimeSdf.parse(str);
+			return datetimeSdf.get().parse(str);
 		} catch (ParseException e) {
 			e.printStackTrace();
 		}
@@ -31,7 +40,7 @@ public class DateUtil {
 	}
 
 	public static String formateDate(Date date) {
-		return datetimeSdf.format(date);
+		return DateCodec.format(date);
 	}
 
 	public static Date changeLongToDate(long date) {
@@ -39,7 +48,7 @@ public class DateUtil {
 	}
 
 	public static String changeLongToString(long date) {
-		return datetimeSdf.format(new Date(date));
+		return DateCodec.format(date);
 	}
 
 }
@@ -0,0 +1,888 @@
+package cn.friday.base.service.global.redis.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * zset成员的编解码
+ * <p>
+ * 每个类只分析一次，文本格式和原来的MemberUtil一致：按照声明顺序取所有字段(包括静态字段)，
+ * 用和原来一样的getter取值后String.valueOf，字段之间用'_'分隔。
+ * 所以null保存为"null"，日期为Date.toString()，枚举为toString()，
+ * 没有getter的字段保存为" can't find 'get字段名' method"，解析时跳过这段文本，字段保持默认值；
+ * 静态字段解析时忽略。
+ * 字段值中的'_'写成"\_"，紧挨在'_'前面的连续'\'以及不是最后一个字段的值末尾的连续'\'写成两个，
+ * 其它位置的'\'原样保存。只有值中有'_'或者不是最后一个字段的值以'\'结尾时和原来的格式不同，
+ * 这样的旧数据原来也无法正确解析。
+ * 解析时连续n个'\'后面是'_'时得到n/2个'\'，n为奇数时'_'是字段值的一部分，否则是分隔符；
+ * 后面不是'_'的'\'按照普通字符处理。日期同时支持Date.toString()、毫秒数和yyyy-MM-dd HH:mm:ss，
+ * 枚举同时支持name()和toString()。写入优先使用和原来一致的setter，没有时直接写字段。
+ * 另外提供紧凑的二进制格式，见{@link #encodeCompact(Object)}，紧凑格式只包含非静态字段，
+ * 没有getter时直接读字段，日期保存为毫秒数，枚举保存为name()
+ * </p>
+ * @author BravoZu
+ *
+ * @param <T>
+ */
+public class MemberCodec<T> {
+
+	private static final Logger logger = Logger.getLogger(MemberCodec.class);
+
+	private final static ConcurrentMap<Class<?>, MemberCodec<?>> codecs = new ConcurrentHashMap<Class<?>, MemberCodec<?>>();
+
+	private final static MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final static char SEPARATOR = '_';
+
+	private final static char ESCAPE = '\\';
+
+	private final static String NULL = "null";
+
+	/**
+	 * Date.toString()的格式
+	 */
+	private final static ThreadLocal<SimpleDateFormat> DATE_TO_STRING = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+		}
+	};
+
+	/**
+	 * 紧凑格式的第一个字节，合法的UTF-8文本不会出现0xFF，可以和文本格式区分
+	 */
+	public final static byte COMPACT_MARKER = (byte) 0xFF;
+
+	private final Class<T> type;
+
+	//基本类型、字符串、枚举和日期直接作为成员，不拆分字段
+	private final Kind simpleKind;
+
+	private final MethodHandle constructor;
+
+	//紧凑格式的字段，不包括静态字段
+	private final FieldCodec[] fields;
+
+	//文本格式的字段，和原来一样包括所有字段
+	private final TextField[] textFields;
+
+	//有非基本类型的字段时，紧凑格式需要null位图
+	private final boolean nullable;
+
+	@SuppressWarnings("unchecked")
+	public static <T> MemberCodec<T> forClass(Class<T> type) {
+		MemberCodec<T> codec = (MemberCodec<T>) codecs.get(type);
+		if (codec == null) {
+			codec = new MemberCodec<T>(type);
+			MemberCodec<T> exists = (MemberCodec<T>) codecs.putIfAbsent(type, codec);
+			if (exists != null) {
+				codec = exists;
+			}
+		}
+		return codec;
+	}
+
+	private MemberCodec(Class<T> type) {
+		this.type = type;
+		Kind kind = kind(type);
+		if (kind != Kind.OTHER) {
+			this.simpleKind = kind;
+			this.constructor = null;
+			this.fields = new FieldCodec[0];
+			this.textFields = new TextField[0];
+			this.nullable = false;
+			return;
+		}
+		this.simpleKind = null;
+		this.constructor = constructor(type);
+		List<FieldCodec> fields = new ArrayList<FieldCodec>();
+		List<TextField> textFields = new ArrayList<TextField>();
+		boolean nullable = false;
+		for (Field field : type.getDeclaredFields()) {
+			FieldCodec codec = null;
+			if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+				codec = new FieldCodec(type, field);
+				fields.add(codec);
+				nullable |= !field.getType().isPrimitive();
+			}
+			textFields.add(new TextField(type, field, codec));
+		}
+		this.fields = fields.toArray(new FieldCodec[fields.size()]);
+		this.textFields = textFields.toArray(new TextField[textFields.size()]);
+		this.nullable = nullable;
+	}
+
+	public String encode(T t) {
+		if (simpleKind != null) {
+			return format(simpleKind, t);
+		}
+		StringBuilder builder = new StringBuilder(textFields.length * 8);
+		for (int i = 0; i < textFields.length; i++) {
+			if (i > 0) {
+				builder.append(SEPARATOR);
+			}
+			TextField field = textFields[i];
+			if (field.getter == null) {
+				//和原来一样，原样写入
+				builder.append(field.placeholder);
+				continue;
+			}
+			Object value;
+			try {
+				value = field.getter.invokeExact(t);
+			} catch (Throwable e) {
+				throw new IllegalStateException("encode member failed, type:" + type.getName(), e);
+			}
+			if (value == null) {
+				builder.append(NULL);
+			} else {
+				escape(builder, String.valueOf(value), i == textFields.length - 1);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 一次遍历解析成员，格式不正确时返回null
+	 * @param member
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T decode(String member) {
+		if (member == null) {
+			return null;
+		}
+		//和原来一样，基本类型解析失败时抛出异常
+		if (simpleKind != null) {
+			return (T) parse(simpleKind, type, member);
+		}
+		try {
+			T t = (T) constructor.invoke();
+			int length = member.length();
+			int start = 0;
+			for (int index = 0;; index++) {
+				if (index >= textFields.length) {
+					//字段数量不一致，和原来一样返回null
+					return null;
+				}
+				TextField field = textFields[index];
+				int end;
+				if (field.isPlaceholder(member, start)) {
+					end = start + field.placeholder.length();
+				} else {
+					end = valueEnd(member, start);
+					if (field.codec != null) {
+						int escape = member.indexOf(ESCAPE, start);
+						String value = escape < 0 || escape >= end ? member.substring(start, end)
+								: unescape(member, start, end);
+						field.codec.set(t, parseText(field.codec.kind, field.codec.type, value));
+					}
+				}
+				if (end >= length) {
+					return t;
+				}
+				start = end + 1;
+			}
+		} catch (Throwable e) {
+			logger.warn("decode member failed, type:" + type.getName() + ", member:" + member, e);
+		}
+		return null;
+	}
+
+	/**
+	 * 字段值的结束位置，即没有被转义的'_'或者末尾
+	 */
+	private static int valueEnd(String member, int start) {
+		int length = member.length();
+		int i = start;
+		while (i < length) {
+			char c = member.charAt(i);
+			if (c == SEPARATOR) {
+				return i;
+			}
+			if (c != ESCAPE) {
+				i++;
+				continue;
+			}
+			int end = i;
+			while (end < length && member.charAt(end) == ESCAPE) {
+				end++;
+			}
+			if (end < length && member.charAt(end) == SEPARATOR && (end - i) % 2 == 0) {
+				//偶数个'\'后面的'_'是分隔符
+				return end;
+			}
+			//奇数个'\'后面的'_'是字段值的一部分
+			i = end < length && member.charAt(end) == SEPARATOR ? end + 1 : end;
+		}
+		return length;
+	}
+
+	/**
+	 * 还原字段值中的转义
+	 */
+	private static String unescape(String member, int start, int end) {
+		StringBuilder builder = new StringBuilder(end - start);
+		int i = start;
+		while (i < end) {
+			char c = member.charAt(i);
+			if (c != ESCAPE) {
+				builder.append(c);
+				i++;
+				continue;
+			}
+			int run = i;
+			while (run < end && member.charAt(run) == ESCAPE) {
+				run++;
+			}
+			if (run < member.length() && member.charAt(run) == SEPARATOR) {
+				appendEscapes(builder, (run - i) / 2);
+				if ((run - i) % 2 == 1) {
+					builder.append(SEPARATOR);
+					run++;
+				}
+			} else {
+				//后面不是'_'，按照普通字符处理
+				builder.append(member, i, run);
+			}
+			i = run;
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * 紧凑的二进制格式
+	 * <p>
+	 * 第一个字节为0xFF。基本类型、字符串、枚举和日期直接跟着值，
+	 * 其它类型依次为字段数量(变长整数)、null位图(有非基本类型字段时才有，每个字段一位)和按声明顺序的字段值。
+	 * 整数、字符和日期(毫秒数)使用zigzag变长编码，double、float保存IEEE 754的8、4个字节，boolean一个字节，
+	 * 字符串和枚举的name()保存为变长长度加UTF-8，成员本身是字符串或枚举时不需要长度。
+	 * 相同的值编码结果相同，可以作为zset的成员
+	 * </p>
+	 * @param t
+	 * @return
+	 */
+	public byte[] encodeCompact(T t) {
+		if (t == null) {
+			throw new IllegalStateException("encode member failed, member is null, type:" + type.getName());
+		}
+		Output out = new Output(fields.length * 4 + 9);
+		out.write(COMPACT_MARKER);
+		if (simpleKind != null) {
+			if (simpleKind == Kind.STRING || simpleKind == Kind.ENUM) {
+				out.write(format(simpleKind, t).getBytes(StandardCharsets.UTF_8));
+			} else {
+				writeValue(out, simpleKind, t);
+			}
+			return out.toByteArray();
+		}
+		Object[] values = new Object[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			try {
+				values[i] = fields[i].get(t);
+			} catch (Throwable e) {
+				throw new IllegalStateException("encode member failed, type:" + type.getName(), e);
+			}
+		}
+		out.writeVarint(fields.length);
+		if (nullable) {
+			byte[] bitmap = new byte[(fields.length + 7) / 8];
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null) {
+					bitmap[i >> 3] |= 1 << (i & 7);
+				}
+			}
+			out.write(bitmap);
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				writeValue(out, fields[i].kind, values[i]);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 解析紧凑格式，不是以0xFF开头时按照文本格式解析，
+	 * 格式不正确时和文本格式一样返回null
+	 * @param member
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T decodeCompact(byte[] member) {
+		if (member == null) {
+			return null;
+		}
+		if (!isCompact(member)) {
+			return decode(AsciiCodec.toString(member));
+		}
+		Input in = new Input(member, 1);
+		//和文本格式一样，基本类型解析失败时抛出异常
+		if (simpleKind != null) {
+			if (simpleKind == Kind.STRING || simpleKind == Kind.ENUM) {
+				return (T) parse(simpleKind, type, in.readString(member.length - 1));
+			}
+			Object value = readValue(in, simpleKind, type);
+			if (!in.isEnd()) {
+				throw new IllegalArgumentException("invalid compact member, type:" + type.getName());
+			}
+			return (T) value;
+		}
+		try {
+			if (in.readVarint() != fields.length) {
+				//字段数量不一致
+				return null;
+			}
+			int bitmapOffset = in.pos;
+			if (nullable) {
+				in.skip((fields.length + 7) / 8);
+			}
+			T t = (T) constructor.invoke();
+			for (int i = 0; i < fields.length; i++) {
+				FieldCodec field = fields[i];
+				if (nullable && (member[bitmapOffset + (i >> 3)] & (1 << (i & 7))) != 0) {
+					field.set(t, null);
+				} else {
+					field.set(t, readValue(in, field.kind, field.type));
+				}
+			}
+			return in.isEnd() ? t : null;
+		} catch (Throwable e) {
+			logger.warn("decode compact member failed, type:" + type.getName(), e);
+		}
+		return null;
+	}
+
+	/**
+	 * 是否为紧凑格式
+	 * @param member
+	 * @return
+	 */
+	public static boolean isCompact(byte[] member) {
+		return member != null && member.length > 0 && member[0] == COMPACT_MARKER;
+	}
+
+	/**
+	 * 字段的类型
+	 */
+	private enum Kind {
+		STRING, INT, LONG, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN, CHAR, ENUM, DATE, OTHER
+	}
+
+	/**
+	 * 单个字段的读写
+	 */
+	private static class FieldCodec {
+
+		private final Class<?> type;
+
+		private final Kind kind;
+
+		private final MethodHandle getter;
+
+		private final MethodHandle setter;
+
+		FieldCodec(Class<?> owner, Field field) {
+			this.type = field.getType();
+			this.kind = kind(type);
+			this.getter = getter(owner, field);
+			this.setter = setter(owner, field);
+		}
+
+		Object get(Object bean) throws Throwable {
+			return getter.invokeExact(bean);
+		}
+
+		void set(Object bean, Object value) throws Throwable {
+			//基本类型不能设置null，保持默认值
+			if (value == null && type.isPrimitive()) {
+				return;
+			}
+			setter.invokeExact(bean, value);
+		}
+
+	}
+
+	/**
+	 * 文本格式的字段，和原来一样使用getter取值
+	 */
+	private static class TextField {
+
+		//静态字段为null，解析时忽略
+		private final FieldCodec codec;
+
+		//没有getter时为null
+		private final MethodHandle getter;
+
+		//没有getter时原来写入的文本
+		private final String placeholder;
+
+		TextField(Class<?> owner, Field field, FieldCodec codec) {
+			this.codec = codec;
+			this.getter = legacyGetter(owner, field);
+			this.placeholder = " can't find 'get" + field.getName() + "' method";
+		}
+
+		/**
+		 * 从start开始是否为没有getter时写入的文本
+		 */
+		boolean isPlaceholder(String member, int start) {
+			int end = start + placeholder.length();
+			return member.startsWith(placeholder, start)
+					&& (end == member.length() || member.charAt(end) == SEPARATOR);
+		}
+
+	}
+
+	private static Kind kind(Class<?> type) {
+		if (type == String.class) {
+			return Kind.STRING;
+		} else if (type == int.class || type == Integer.class) {
+			return Kind.INT;
+		} else if (type == long.class || type == Long.class) {
+			return Kind.LONG;
+		} else if (type == short.class || type == Short.class) {
+			return Kind.SHORT;
+		} else if (type == byte.class || type == Byte.class) {
+			return Kind.BYTE;
+		} else if (type == double.class || type == Double.class) {
+			return Kind.DOUBLE;
+		} else if (type == float.class || type == Float.class) {
+			return Kind.FLOAT;
+		} else if (type == boolean.class || type == Boolean.class) {
+			return Kind.BOOLEAN;
+		} else if (type == char.class || type == Character.class) {
+			return Kind.CHAR;
+		} else if (type.isEnum()) {
+			return Kind.ENUM;
+		} else if (type == Date.class) {
+			return Kind.DATE;
+		}
+		return Kind.OTHER;
+	}
+
+	private static String format(Kind kind, Object value) {
+		if (value == null) {
+			return NULL;
+		}
+		switch (kind) {
+		case ENUM:
+			return ((Enum<?>) value).name();
+		case DATE:
+			return Long.toString(((Date) value).getTime());
+		default:
+			return String.valueOf(value);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object parse(Kind kind, Class<?> type, String value) {
+		//和原来一样，字符串的"null"仍然是字符串
+		if (kind == Kind.STRING) {
+			return value;
+		}
+		if (NULL.equals(value) && !type.isPrimitive()) {
+			return null;
+		}
+		switch (kind) {
+		case INT:
+			return Integer.valueOf(value);
+		case LONG:
+			return Long.valueOf(value);
+		case SHORT:
+			return Short.valueOf(value);
+		case BYTE:
+			return Byte.valueOf(value);
+		case DOUBLE:
+			return Double.valueOf(value);
+		case FLOAT:
+			return Float.valueOf(value);
+		case BOOLEAN:
+			return Boolean.valueOf(value);
+		case CHAR:
+			if (value.length() != 1) {
+				throw new IllegalArgumentException("invalid char: " + value);
+			}
+			return value.charAt(0);
+		case ENUM:
+			return Enum.valueOf((Class<? extends Enum>) type, value);
+		case DATE:
+			Date date = DateCodec.parseAny(value);
+			if (date == null) {
+				throw new IllegalArgumentException("invalid date: " + value);
+			}
+			return date;
+		default:
+			return ConvertUtils.convert(value, type);
+		}
+	}
+
+	/**
+	 * 解析文本格式的字段值，兼容原来写入的Date.toString()和枚举的toString()
+	 */
+	@SuppressWarnings("rawtypes")
+	private static Object parseText(Kind kind, Class<?> type, String value) {
+		if (kind == Kind.DATE && !NULL.equals(value) && DateCodec.parseAny(value) == null) {
+			try {
+				return DATE_TO_STRING.get().parse(value);
+			} catch (ParseException e) {
+				throw new IllegalArgumentException("invalid date: " + value, e);
+			}
+		}
+		if (kind == Kind.ENUM && !NULL.equals(value)) {
+			for (Object constant : type.getEnumConstants()) {
+				if (((Enum) constant).name().equals(value)) {
+					return constant;
+				}
+			}
+			for (Object constant : type.getEnumConstants()) {
+				if (constant.toString().equals(value)) {
+					return constant;
+				}
+			}
+			throw new IllegalArgumentException("invalid enum: " + value);
+		}
+		return parse(kind, type, value);
+	}
+
+	private static void writeValue(Output out, Kind kind, Object value) {
+		switch (kind) {
+		case INT:
+		case LONG:
+		case SHORT:
+		case BYTE:
+			out.writeZigzag(((Number) value).longValue());
+			break;
+		case DATE:
+			out.writeZigzag(((Date) value).getTime());
+			break;
+		case CHAR:
+			out.writeVarint((Character) value);
+			break;
+		case DOUBLE:
+			out.writeFixed(Double.doubleToLongBits((Double) value), 8);
+			break;
+		case FLOAT:
+			out.writeFixed(Float.floatToIntBits((Float) value), 4);
+			break;
+		case BOOLEAN:
+			out.write((byte) (((Boolean) value) ? 1 : 0));
+			break;
+		default:
+			byte[] bytes = format(kind, value).getBytes(StandardCharsets.UTF_8);
+			out.writeVarint(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readValue(Input in, Kind kind, Class<?> type) {
+		switch (kind) {
+		case INT:
+			return (int) in.readZigzag();
+		case LONG:
+			return in.readZigzag();
+		case SHORT:
+			return (short) in.readZigzag();
+		case BYTE:
+			return (byte) in.readZigzag();
+		case DATE:
+			return new Date(in.readZigzag());
+		case CHAR:
+			return (char) in.readVarint();
+		case DOUBLE:
+			return Double.longBitsToDouble(in.readFixed(8));
+		case FLOAT:
+			return Float.intBitsToFloat((int) in.readFixed(4));
+		case BOOLEAN:
+			return in.readByte() != 0;
+		case STRING:
+			return in.readString((int) in.readVarint());
+		case ENUM:
+			return Enum.valueOf((Class<? extends Enum>) type, in.readString((int) in.readVarint()));
+		default:
+			return ConvertUtils.convert(in.readString((int) in.readVarint()), type);
+		}
+	}
+
+	/**
+	 * 转义字段值，'_'和紧挨在'_'前面的'\'需要转义，
+	 * 不是最后一个字段时值末尾的'\'后面会跟着分隔符，也需要转义
+	 * @param builder
+	 * @param value
+	 * @param last 是否为最后一个字段
+	 */
+	private static void escape(StringBuilder builder, String value, boolean last) {
+		int escapes = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ESCAPE) {
+				escapes++;
+			} else {
+				if (c == SEPARATOR) {
+					appendEscapes(builder, escapes + 1);
+				}
+				escapes = 0;
+			}
+			builder.append(c);
+		}
+		if (!last) {
+			appendEscapes(builder, escapes);
+		}
+	}
+
+	private static void appendEscapes(StringBuilder builder, int count) {
+		for (int i = 0; i < count; i++) {
+			builder.append(ESCAPE);
+		}
+	}
+
+	private static MethodHandle constructor(Class<?> type) {
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+		} catch (Exception e) {
+			throw new IllegalArgumentException("no default constructor: " + type.getName(), e);
+		}
+	}
+
+	/**
+	 * 和原来一样，boolean字段使用isXxx(字段名以is开头时就是字段名)，其它使用getXxx，
+	 * 不检查返回类型，没有对应的public方法时返回null
+	 */
+	private static MethodHandle legacyGetter(Class<?> owner, Field field) {
+		String name = field.getName();
+		String methodName;
+		if (field.getType() == boolean.class) {
+			methodName = name.startsWith("is") ? name : "is" + capitalize(name);
+		} else {
+			methodName = "get" + capitalize(name);
+		}
+		Method method;
+		try {
+			method = owner.getMethod(methodName);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		try {
+			method.setAccessible(true);
+			MethodHandle handle = LOOKUP.unreflect(method);
+			if (Modifier.isStatic(method.getModifiers())) {
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			}
+			return handle.asType(MethodType.methodType(Object.class, Object.class));
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("can not access " + method, e);
+		}
+	}
+
+	/**
+	 * 和原来一样，boolean字段使用isXxx(字段名以is开头时就是字段名)，其它使用getXxx，
+	 * 没有对应的方法时直接读字段
+	 */
+	private static MethodHandle getter(Class<?> owner, Field field) {
+		String name = field.getName();
+		String methodName;
+		if (field.getType() == boolean.class) {
+			methodName = name.startsWith("is") ? name : "is" + capitalize(name);
+		} else {
+			methodName = "get" + capitalize(name);
+		}
+		try {
+			Method method = owner.getMethod(methodName);
+			if (method.getReturnType() == field.getType()) {
+				return LOOKUP.unreflect(method).asType(MethodType.methodType(Object.class, Object.class));
+			}
+		} catch (NoSuchMethodException e) {
+			//直接读字段
+		} catch (IllegalAccessException e) {
+			//直接读字段
+		}
+		try {
+			field.setAccessible(true);
+			return LOOKUP.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("can not access " + field, e);
+		}
+	}
+
+	/**
+	 * 和原来一样，boolean字段名以is开头时去掉is，其它使用setXxx，
+	 * 没有对应的方法时直接写字段
+	 */
+	private static MethodHandle setter(Class<?> owner, Field field) {
+		String name = field.getName();
+		Class<?> type = field.getType();
+		if (name.startsWith("is") && (type == boolean.class || type == Boolean.class)) {
+			name = name.substring(2);
+		}
+		try {
+			Method method = owner.getMethod("set" + capitalize(name), type);
+			return LOOKUP.unreflect(method).asType(MethodType.methodType(void.class, Object.class, Object.class));
+		} catch (NoSuchMethodException e) {
+			//直接写字段
+		} catch (IllegalAccessException e) {
+			//直接写字段
+		}
+		try {
+			field.setAccessible(true);
+			return LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("can not access " + field, e);
+		}
+	}
+
+	private static String capitalize(String name) {
+		return name.substring(0, 1).toUpperCase() + name.substring(1);
+	}
+
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * 紧凑格式的写入
+	 */
+	private static final class Output {
+
+		private byte[] buf;
+
+		private int pos;
+
+		Output(int capacity) {
+			this.buf = new byte[capacity];
+		}
+
+		void write(byte b) {
+			ensure(1);
+			buf[pos++] = b;
+		}
+
+		void write(byte[] bytes) {
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+
+		void writeVarint(long value) {
+			ensure(10);
+			while ((value & ~0x7FL) != 0) {
+				buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buf[pos++] = (byte) value;
+		}
+
+		void writeZigzag(long value) {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+
+		void writeFixed(long value, int size) {
+			ensure(size);
+			for (int i = size - 1; i >= 0; i--) {
+				buf[pos++] = (byte) (value >>> (i * 8));
+			}
+		}
+
+		byte[] toByteArray() {
+			return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+		}
+
+		private void ensure(int size) {
+			if (pos + size > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + size));
+			}
+		}
+
+	}
+
+	/**
+	 * 紧凑格式的读取，越界时抛出IllegalArgumentException
+	 */
+	private static final class Input {
+
+		private final byte[] buf;
+
+		private int pos;
+
+		Input(byte[] buf, int pos) {
+			this.buf = buf;
+			this.pos = pos;
+		}
+
+		byte readByte() {
+			check(1);
+			return buf[pos++];
+		}
+
+		long readVarint() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("invalid varint");
+		}
+
+		long readZigzag() {
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		long readFixed(int size) {
+			check(size);
+			long value = 0;
+			for (int i = 0; i < size; i++) {
+				value = (value << 8) | (buf[pos++] & 0xFF);
+			}
+			return value;
+		}
+
+		String readString(int length) {
+			check(length);
+			String str = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return str;
+		}
+
+		void skip(int length) {
+			check(length);
+			pos += length;
+		}
+
+		boolean isEnd() {
+			return pos == buf.length;
+		}
+
+		private void check(int size) {
+			if (size < 0 || pos + size > buf.length) {
+				throw new IllegalArgumentException("invalid compact member");
+			}
+		}
+
+	}
+
+
+}
@@ -0,0 +1,21 @@
+package cn.friday.base.service.global.redis.util;
+
+/**
+ * zset成员的保存格式，在dao构造时指定
+ * @author BravoZu
+ *
+ */
+public enum MemberEncoding {
+
+	/**
+	 * 原来的文本格式，字段之间用'_'分隔
+	 */
+	TEXT,
+
+	/**
+	 * 紧凑的二进制格式，以0xFF开头，整数和日期使用zigzag变长编码，
+	 * 读取时两种格式都支持，可以在原来的key上逐步迁移，具体格式见{@link MemberCodec#encodeCompact(Object)}
+	 */
+	COMPACT
+
+}
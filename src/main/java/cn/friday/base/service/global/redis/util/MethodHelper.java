@@ -16,12 +16,23 @@ public class MethodHelper {
 	 *@author BravoZu
 	 */
 	public static boolean expire(StringRedisTemplate stringRedisTemplate, final String key, final long seconds) {
+		return expire(stringRedisTemplate, key.getBytes(), seconds);
+	}
+
+	/**
+	 * 设置过期时间
+	 * @param stringRedisTemplate
+	 * @param key
+	 * @param seconds
+	 * @return
+	 */
+	public static boolean expire(StringRedisTemplate stringRedisTemplate, final byte[] key, final long seconds) {
 		stringRedisTemplate.execute(new RedisCallback<Boolean>() {
 			@Override
 			public Boolean doInRedis(RedisConnection connection) throws DataAccessException {
 				Boolean flag = false;
 				try {
-					flag = connection.expire(key.getBytes(), seconds);
+					flag = connection.expire(key, seconds);
 				} finally {
 					connection.close();
 				}
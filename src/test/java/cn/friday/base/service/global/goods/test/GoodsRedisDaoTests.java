@@ -1,6 +1,9 @@
 package cn.friday.base.service.global.goods.test;
 
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
@@ -57,6 +60,16 @@ public class GoodsRedisDaoTests {
 		}
 	}
 
+	@Test
+	public void testMultiFindByIds() {
+		Set<Long> ids = new LinkedHashSet<Long>();
+		for (long i = 0; i < 50; i++) {
+			ids.add(i);
+		}
+		Map<Long, GoodsRedis> result = goodsRedisDao.multiFindByIds(ids);
+		System.out.println(result);
+	}
+
 	private GoodsRedis createGoods() {
 		GoodsRedis goodsRedis = new GoodsRedis();
 		goodsRedis.setName("name" + System.currentTimeMillis());
@@ -0,0 +1,84 @@
+package cn.friday.base.service.global.goods.test;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.hash.BeanUtilsHashMapper;
+
+import cn.friday.base.service.global.goods.mapper.GoodsRedisMapper;
+import cn.friday.base.service.global.goods.model.GoodsRedis;
+
+/**
+ * 对比BeanUtilsHashMapper和预编译的BaseRedisMapper
+ * @author BravoZu
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoodsRedisMapperBenchmark {
+
+	private BeanUtilsHashMapper<GoodsRedis> beanUtilsMapper;
+
+	private GoodsRedisMapper goodsRedisMapper;
+
+	private GoodsRedis goods;
+
+	private Map<String, String> hash;
+
+	@Setup
+	public void setup() {
+		beanUtilsMapper = new BeanUtilsHashMapper<GoodsRedis>(GoodsRedis.class);
+		goodsRedisMapper = new GoodsRedisMapper();
+		goods = new GoodsRedis();
+		goods.setId(1001);
+		goods.setTitle("title");
+		goods.setName("name");
+		goods.setAddTime(new Date());
+		hash = goodsRedisMapper.toHash(goods);
+	}
+
+	@Benchmark
+	public Map<String, String> beanUtilsToHash() {
+		return beanUtilsMapper.toHash(goods);
+	}
+
+	@Benchmark
+	public Map<String, String> mapperToHash() {
+		return goodsRedisMapper.toHash(goods);
+	}
+
+	@Benchmark
+	public GoodsRedis beanUtilsFromHash() {
+		return beanUtilsMapper.fromHash(hash);
+	}
+
+	@Benchmark
+	public GoodsRedis mapperFromHash() {
+		return goodsRedisMapper.fromHash(hash);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(GoodsRedisMapperBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,269 @@
+package cn.friday.base.service.global.member.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import cn.friday.base.service.global.redis.util.MemberCodec;
+import cn.friday.base.service.global.redis.util.MemberEncoding;
+import cn.friday.base.service.global.redis.util.MemberUtil;
+
+/**
+ * zset成员紧凑格式的编解码
+ * @author BravoZu
+ *
+ */
+public class CompactMemberCodecTest {
+
+	private final MemberCodec<Long> longCodec = MemberCodec.forClass(Long.class);
+
+	private final MemberCodec<Item> itemCodec = MemberCodec.forClass(Item.class);
+
+	@Test
+	public void varintBoundaries() {
+		assertArrayEquals(new byte[] { MemberCodec.COMPACT_MARKER, 0 }, longCodec.encodeCompact(0L));
+		assertArrayEquals(new byte[] { MemberCodec.COMPACT_MARKER, 1 }, longCodec.encodeCompact(-1L));
+		assertArrayEquals(new byte[] { MemberCodec.COMPACT_MARKER, 2 }, longCodec.encodeCompact(1L));
+		assertArrayEquals(new byte[] { MemberCodec.COMPACT_MARKER, 127 }, longCodec.encodeCompact(-64L));
+		assertArrayEquals(new byte[] { MemberCodec.COMPACT_MARKER, (byte) 0x80, 1 }, longCodec.encodeCompact(64L));
+		//zigzag后需要64位，变长编码10个字节
+		assertEquals(11, longCodec.encodeCompact(Long.MAX_VALUE).length);
+		assertEquals(11, longCodec.encodeCompact(Long.MIN_VALUE).length);
+		long[] values = { 0, -1, 1, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE,
+				Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1 };
+		for (long value : values) {
+			assertEquals(Long.valueOf(value), longCodec.decodeCompact(longCodec.encodeCompact(value)));
+		}
+	}
+
+	@Test
+	public void intBoundaries() {
+		MemberCodec<Integer> intCodec = MemberCodec.forClass(Integer.class);
+		int[] values = { 0, -1, 1, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (int value : values) {
+			assertEquals(Integer.valueOf(value), intCodec.decodeCompact(intCodec.encodeCompact(value)));
+		}
+		assertEquals(6, intCodec.encodeCompact(Integer.MIN_VALUE).length);
+	}
+
+	@Test
+	public void objectRoundTrip() {
+		Item item = item();
+		byte[] compact = itemCodec.encodeCompact(item);
+		assertTrue(MemberCodec.isCompact(compact));
+		assertItem(item, itemCodec.decodeCompact(compact));
+		//相同的值编码结果相同
+		assertArrayEquals(compact, itemCodec.encodeCompact(item()));
+	}
+
+	@Test
+	public void nullBitmapOverEightFields() {
+		MemberCodec<Wide> codec = MemberCodec.forClass(Wide.class);
+		Wide wide = new Wide();
+		wide.f1 = 1;
+		wide.f2 = -2;
+		wide.f4 = Long.MIN_VALUE;
+		wide.f7 = "_\\";
+		wide.f9 = Long.MAX_VALUE;
+		wide.f10 = 10;
+		Wide decoded = codec.decodeCompact(codec.encodeCompact(wide));
+		assertEquals(wide.f1, decoded.f1);
+		assertEquals(wide.f2, decoded.f2);
+		assertNull(decoded.f3);
+		assertEquals(wide.f4, decoded.f4);
+		assertNull(decoded.f5);
+		assertNull(decoded.f6);
+		assertEquals(wide.f7, decoded.f7);
+		assertNull(decoded.f8);
+		assertEquals(wide.f9, decoded.f9);
+		assertEquals(wide.f10, decoded.f10);
+
+		Wide empty = codec.decodeCompact(codec.encodeCompact(new Wide()));
+		assertNull(empty.f1);
+		assertNull(empty.f9);
+		assertNull(empty.f10);
+	}
+
+	@Test
+	public void truncatedInput() {
+		byte[] compact = itemCodec.encodeCompact(item());
+		for (int length = 1; length < compact.length; length++) {
+			assertNull(itemCodec.decodeCompact(Arrays.copyOf(compact, length)));
+		}
+		//多出来的字节也不能解析
+		assertNull(itemCodec.decodeCompact(Arrays.copyOf(compact, compact.length + 1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncatedSimpleType() {
+		byte[] compact = longCodec.encodeCompact(Long.MAX_VALUE);
+		longCodec.decodeCompact(Arrays.copyOf(compact, compact.length - 1));
+	}
+
+	@Test
+	public void readTextAndCompact() {
+		Item item = item();
+		MemberUtil<Item> text = new MemberUtil<Item>(Item.class);
+		MemberUtil<Item> compact = new MemberUtil<Item>(Item.class, MemberEncoding.COMPACT);
+		byte[] textBytes = text.getMemberBytes(item);
+		byte[] compactBytes = compact.getMemberBytes(item);
+		assertArrayEquals(itemCodec.encode(item).getBytes(StandardCharsets.UTF_8), textBytes);
+		assertArrayEquals(textBytes, compact.getTextMemberBytes(item));
+		assertTrue(compactBytes.length < textBytes.length);
+		//两种格式互相都可以读取
+		assertItem(item, text.getObject(textBytes));
+		assertItem(item, text.getObject(compactBytes));
+		assertItem(item, compact.getObject(textBytes));
+		assertItem(item, compact.getObject(compactBytes));
+		assertItem(item, itemCodec.decodeCompact(textBytes));
+
+		MemberUtil<Long> longs = new MemberUtil<Long>(Long.class, MemberEncoding.COMPACT);
+		assertEquals(Long.valueOf(123456789L), longs.getObject("123456789".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(Long.valueOf(123456789L), longs.getObject(longs.getMemberBytes(123456789L)));
+	}
+
+	private static Item item() {
+		Item item = new Item();
+		item.id = 123456789L;
+		item.name = "goods_1";
+		item.color = Color.BLUE;
+		//文本格式和原来一样是Date.toString()，只精确到秒
+		item.time = new Date(1500000000000L);
+		item.rate = -0.1;
+		item.ratio = 0.5f;
+		item.flag = true;
+		item.count = null;
+		return item;
+	}
+
+	private static void assertItem(Item expected, Item actual) {
+		assertEquals(expected.id, actual.id);
+		assertEquals(expected.name, actual.name);
+		assertEquals(expected.color, actual.color);
+		assertEquals(expected.time, actual.time);
+		assertEquals(expected.rate, actual.rate, 0);
+		assertEquals(expected.ratio, actual.ratio, 0);
+		assertEquals(expected.flag, actual.flag);
+		assertEquals(expected.count, actual.count);
+	}
+
+	public enum Color {
+		RED, BLUE
+	}
+
+	public static class Item {
+
+		private long id;
+
+		private String name;
+
+		private Color color;
+
+		private Date time;
+
+		private double rate;
+
+		private float ratio;
+
+		private boolean flag;
+
+		private Integer count;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Color getColor() {
+			return color;
+		}
+
+		public void setColor(Color color) {
+			this.color = color;
+		}
+
+		public Date getTime() {
+			return time;
+		}
+
+		public void setTime(Date time) {
+			this.time = time;
+		}
+
+		public double getRate() {
+			return rate;
+		}
+
+		public void setRate(double rate) {
+			this.rate = rate;
+		}
+
+		public float getRatio() {
+			return ratio;
+		}
+
+		public void setRatio(float ratio) {
+			this.ratio = ratio;
+		}
+
+		public boolean isFlag() {
+			return flag;
+		}
+
+		public void setFlag(boolean flag) {
+			this.flag = flag;
+		}
+
+		public Integer getCount() {
+			return count;
+		}
+
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+
+	}
+
+	static class Wide {
+
+		private Integer f1;
+
+		private Integer f2;
+
+		private Integer f3;
+
+		private Long f4;
+
+		private Long f5;
+
+		private String f6;
+
+		private String f7;
+
+		private Long f8;
+
+		private Long f9;
+
+		private Integer f10;
+
+	}
+
+}
@@ -0,0 +1,248 @@
+package cn.friday.base.service.global.member.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.junit.Test;
+
+import cn.friday.base.service.global.redis.util.MemberCodec;
+
+/**
+ * zset成员文本格式的编解码
+ * @author BravoZu
+ *
+ */
+public class MemberCodecTest {
+
+	private final static Date TIME = new Date(1500000000000L);
+
+	//和原来的MemberUtil一样，静态字段和没有getter的字段写入固定的文本
+	private final static String SERIAL = " can't find 'getserialVersionUID' method";
+
+	private final static String SECRET = " can't find 'getsecret' method";
+
+	private final MemberCodec<Item> codec = MemberCodec.forClass(Item.class);
+
+	@Test
+	public void legacyMember() {
+		//原来的MemberUtil写入的成员，日期为Date.toString()，枚举为toString()
+		String member = SERIAL + "_goods_blue_" + TIME + "_2.5_3_42_true_" + SECRET + "_remark";
+		Item item = item("goods", "remark");
+		item.secret = "ignored";
+		assertEquals(member, codec.encode(item));
+		Item decoded = codec.decode(member);
+		assertItem(item("goods", "remark"), decoded);
+		assertNull(decoded.secret);
+	}
+
+	@Test
+	public void newFormatsStillReadable() {
+		String member = SERIAL + "_goods_BLUE_1500000000000_2.5_3_42_true_" + SECRET + "_remark";
+		assertItem(item("goods", "remark"), codec.decode(member));
+	}
+
+	@Test
+	public void escapeSeparator() {
+		Item item = item("a_b", "c_d");
+		String member = codec.encode(item);
+		assertEquals(SERIAL + "_a\\_b_blue_" + TIME + "_2.5_3_42_true_" + SECRET + "_c\\_d", member);
+		assertItem(item, codec.decode(member));
+	}
+
+	@Test
+	public void backslashWithoutSeparatorUnchanged() {
+		//不在'_'前面的'\'和原来的格式一致
+		Item item = item("a\\b\\\\c", "d\\");
+		String member = codec.encode(item);
+		assertEquals(SERIAL + "_a\\b\\\\c_blue_" + TIME + "_2.5_3_42_true_" + SECRET + "_d\\", member);
+		assertItem(item, codec.decode(member));
+	}
+
+	@Test
+	public void backslashBeforeSeparator() {
+		String[] values = { "a\\", "a\\\\", "\\_", "\\\\_x", "_", "\\", "" };
+		for (String name : values) {
+			for (String remark : values) {
+				Item item = item(name, remark);
+				assertItem(item, codec.decode(codec.encode(item)));
+			}
+		}
+		assertEquals(SERIAL + "_a\\\\_blue_" + TIME + "_2.5_3_42_true_" + SECRET + "_b", codec.encode(item("a\\", "b")));
+	}
+
+	@Test
+	public void nullToken() {
+		Item item = item(null, "null");
+		item.count = null;
+		item.time = null;
+		String member = codec.encode(item);
+		assertEquals(SERIAL + "_null_blue_null_2.5_null_42_true_" + SECRET + "_null", member);
+		Item decoded = codec.decode(member);
+		assertNull(decoded.count);
+		assertNull(decoded.time);
+		//和原来一样，字符串的"null"仍然是字符串
+		assertEquals("null", decoded.name);
+		assertEquals("null", decoded.remark);
+	}
+
+	@Test
+	public void enumDateDouble() {
+		Item item = item("n", "r");
+		item.color = Color.RED;
+		item.time = new Date(1234567890000L);
+		item.rate = -0.125;
+		Item decoded = codec.decode(codec.encode(item));
+		assertEquals(Color.RED, decoded.color);
+		//Date.toString()只精确到秒
+		assertEquals(new Date(1234567890000L), decoded.time);
+		assertEquals(-0.125, decoded.rate, 0);
+	}
+
+	@Test
+	public void fieldCountMismatch() {
+		assertNull(codec.decode(codec.encode(item("goods", "remark")) + "_extra"));
+	}
+
+	@Test
+	public void invalidValue() {
+		assertNull(codec.decode(SERIAL + "_goods_green_" + TIME + "_2.5_3_42_true_" + SECRET + "_remark"));
+	}
+
+	@Test
+	public void simpleType() {
+		MemberCodec<Long> longCodec = MemberCodec.forClass(Long.class);
+		assertEquals("-9223372036854775808", longCodec.encode(Long.MIN_VALUE));
+		assertEquals(Long.valueOf(Long.MIN_VALUE), longCodec.decode("-9223372036854775808"));
+		MemberCodec<String> stringCodec = MemberCodec.forClass(String.class);
+		assertEquals("a_b\\", stringCodec.encode("a_b\\"));
+		assertEquals("a_b\\", stringCodec.decode("a_b\\"));
+	}
+
+	private static Item item(String name, String remark) {
+		Item item = new Item();
+		item.name = name;
+		item.color = Color.BLUE;
+		item.time = TIME;
+		item.rate = 2.5;
+		item.count = 3;
+		item.id = 42;
+		item.online = true;
+		item.remark = remark;
+		return item;
+	}
+
+	private static void assertItem(Item expected, Item actual) {
+		assertEquals(expected.name, actual.name);
+		assertEquals(expected.color, actual.color);
+		assertEquals(expected.time, actual.time);
+		assertEquals(expected.rate, actual.rate, 0);
+		assertEquals(expected.count, actual.count);
+		assertEquals(expected.id, actual.id);
+		assertEquals(expected.online, actual.online);
+		assertFalse(actual.secret != null && expected.secret == null);
+		assertEquals(expected.remark, actual.remark);
+	}
+
+	public enum Color {
+		RED, BLUE;
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	public static class Item implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+
+		private Color color;
+
+		private Date time;
+
+		private double rate;
+
+		private Integer count;
+
+		private long id;
+
+		private boolean online;
+
+		//没有getter和setter
+		private String secret;
+
+		private String remark;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Color getColor() {
+			return color;
+		}
+
+		public void setColor(Color color) {
+			this.color = color;
+		}
+
+		public Date getTime() {
+			return time;
+		}
+
+		public void setTime(Date time) {
+			this.time = time;
+		}
+
+		public double getRate() {
+			return rate;
+		}
+
+		public void setRate(double rate) {
+			this.rate = rate;
+		}
+
+		public Integer getCount() {
+			return count;
+		}
+
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public boolean isOnline() {
+			return online;
+		}
+
+		public void setOnline(boolean online) {
+			this.online = online;
+		}
+
+		public String getRemark() {
+			return remark;
+		}
+
+		public void setRemark(String remark) {
+			this.remark = remark;
+		}
+
+	}
+
+}
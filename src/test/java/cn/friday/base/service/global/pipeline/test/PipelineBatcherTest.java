@@ -0,0 +1,143 @@
+package cn.friday.base.service.global.pipeline.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import cn.friday.base.service.global.redis.dao.IRedisOpsTemplate;
+import cn.friday.base.service.global.redis.support.pipeline.PipelineBatcher;
+import cn.friday.base.service.global.redis.support.pipeline.PipelineCommand;
+import cn.friday.base.service.global.redis.support.script.HashScripts;
+
+/**
+ * 自动合并命令的pipeline分发器
+ * @author BravoZu
+ *
+ */
+public class PipelineBatcherTest {
+
+	private final List<String> commands = new ArrayList<String>();
+
+	private List<Object> results;
+
+	@Test
+	public void failedSaveInTheMiddleOfBatch() throws Exception {
+		//中间的写入失败(WRONGTYPE)，失败的命令也占用一个结果
+		results = Arrays.<Object> asList(1L, new RuntimeException("WRONGTYPE Operation against a key"), 2L);
+		PipelineBatcher batcher = new PipelineBatcher(template(), 60000000L, 256);
+		PipelineCommand<Long> first = batcher.submit(increment());
+		PipelineCommand<Long> save = batcher.submit(save());
+		PipelineCommand<Long> last = batcher.submit(increment());
+		batcher.flush();
+
+		assertEquals(Arrays.asList("HINCRBY", "EVALSHA", "HINCRBY"), commands);
+		assertEquals(Long.valueOf(1), first.getFuture().get());
+		try {
+			save.getFuture().get();
+			fail("save should fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause().getMessage().startsWith("WRONGTYPE"));
+		}
+		assertEquals(Long.valueOf(2), last.getFuture().get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectCommandWithoutReply() {
+		new PipelineBatcher(template()).submit(new PipelineCommand<Long>() {
+			@Override
+			protected void write(RedisConnection connection) {
+				connection.hMSet(new byte[0], null);
+			}
+
+			@Override
+			protected Long convert(Object reply) {
+				return null;
+			}
+
+			@Override
+			protected int replies() {
+				return 0;
+			}
+		});
+	}
+
+	private static PipelineCommand<Long> increment() {
+		return new PipelineCommand<Long>() {
+			@Override
+			protected void write(RedisConnection connection) {
+				connection.hIncrBy("key".getBytes(), "field".getBytes(), 1);
+			}
+
+			@Override
+			protected Long convert(Object reply) {
+				return (Long) reply;
+			}
+		};
+	}
+
+	/**
+	 * 和saveAsync一样通过lua脚本写入
+	 * @return
+	 */
+	private static PipelineCommand<Long> save() {
+		return new PipelineCommand<Long>() {
+			@Override
+			protected void write(RedisConnection connection) {
+				HashScripts.SAVE_WITH_EXPIRE.evalSha(connection, 1, "key".getBytes(), "0".getBytes(),
+						"field".getBytes(), "value".getBytes());
+			}
+
+			@Override
+			protected Long convert(Object reply) {
+				return 1L;
+			}
+		};
+	}
+
+	private IRedisOpsTemplate template() {
+		final RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { RedisConnection.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if ("closePipeline".equals(name)) {
+							throw new RedisPipelineException("pipeline failed", results);
+						} else if ("hIncrBy".equals(name)) {
+							commands.add("HINCRBY");
+						} else if ("execute".equals(name)) {
+							commands.add((String) args[0]);
+						} else if (!"openPipeline".equals(name)) {
+							throw new UnsupportedOperationException(name);
+						}
+						return null;
+					}
+				});
+		final StringRedisTemplate template = new StringRedisTemplate() {
+			@Override
+			public <T> T execute(RedisCallback<T> action) {
+				return action.doInRedis(connection);
+			}
+		};
+		return new IRedisOpsTemplate() {
+			@Override
+			public StringRedisTemplate stringRedisTemplate() {
+				return template;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,115 @@
+package cn.friday.base.service.global.syncer.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import cn.friday.base.service.global.redis.syncer.DatabaseSyncer;
+import cn.friday.base.service.global.redis.syncer.WriteBehindQueue;
+
+/**
+ * 合并写的延迟同步队列
+ * @author BravoZu
+ *
+ */
+public class WriteBehindQueueTest {
+
+	@Test
+	public void mergeSavesWithNewSyncers() {
+		WriteBehindQueue<String> queue = new WriteBehindQueue<String>("test", 60000, 10000);
+		final List<List<String>> batches = new ArrayList<List<String>>();
+		for (int i = 0; i < 5; i++) {
+			//和调用方一样，每次保存都创建新的匿名同步器
+			queue.submit(1, "order-" + i, new DatabaseSyncer<String>() {
+
+				@Override
+				public void excute(String t) {
+					batches.add(Collections.singletonList(t));
+				}
+
+				@Override
+				public void excuteAll(List<String> list) {
+					batches.add(new ArrayList<String>(list));
+				}
+			});
+		}
+		assertEquals(1, queue.getBacklog());
+		queue.flush();
+		assertEquals(1, batches.size());
+		assertEquals(1, batches.get(0).size());
+		assertEquals("order-4", batches.get(0).get(0));
+		assertEquals(5, queue.getSubmitted());
+		assertEquals(1, queue.getFlushed());
+	}
+
+	@Test
+	public void keepSyncerStatePerInstance() {
+		WriteBehindQueue<String> queue = new WriteBehindQueue<String>("test", 60000, 10000);
+		List<String> writes = new ArrayList<String>();
+		//两个同步器保存了不同的调用状态，不能互相代替
+		DatabaseSyncer<String> tenantA = new TenantSyncer("a", writes);
+		DatabaseSyncer<String> tenantB = new TenantSyncer("b", writes);
+		queue.submit(1, "order-1", tenantA);
+		queue.submit(2, "order-2", tenantB);
+		queue.submit(3, "order-3", tenantA);
+		queue.submit(1, "order-1-v2", tenantA);
+		queue.flush();
+		Collections.sort(writes);
+		assertEquals(Arrays.asList("a:[order-1-v2, order-3]", "b:[order-2]"), writes);
+		assertEquals(3, queue.getFlushed());
+	}
+
+	@Test
+	public void mergeSyncersWithSameBatchKey() {
+		WriteBehindQueue<String> queue = new WriteBehindQueue<String>("test", 60000, 10000);
+		List<String> writes = new ArrayList<String>();
+		queue.submit(1, "order-1", new TenantSyncer("a", writes, "orders"));
+		queue.submit(2, "order-2", new TenantSyncer("b", writes, "orders"));
+		queue.flush();
+		//显式声明同一批次时使用最后提交的同步器
+		assertEquals(Arrays.asList("b:[order-1, order-2]"), writes);
+	}
+
+	private static class TenantSyncer implements DatabaseSyncer<String> {
+
+		private final String tenant;
+
+		private final List<String> writes;
+
+		private final Object batchKey;
+
+		TenantSyncer(String tenant, List<String> writes) {
+			this(tenant, writes, null);
+		}
+
+		TenantSyncer(String tenant, List<String> writes, Object batchKey) {
+			this.tenant = tenant;
+			this.writes = writes;
+			this.batchKey = batchKey;
+		}
+
+		@Override
+		public void excute(String t) {
+			writes.add(tenant + ":[" + t + "]");
+		}
+
+		@Override
+		public void excuteAll(List<String> list) {
+			List<String> sorted = new ArrayList<String>(list);
+			Collections.sort(sorted);
+			writes.add(tenant + ":" + sorted);
+		}
+
+		@Override
+		public Object batchKey() {
+			return batchKey == null ? this : batchKey;
+		}
+
+	}
+
+}